@@ -0,0 +1,13 @@
+-- Allow several file_items rows to share one stored blob (content-addressed storage)
+-- StorageKeyIndexMigration does this on startup when app.storage.content-addressed is on; run it by hand
+-- only if the application's database user may not ALTER TABLE
+USE filesharing;
+
+-- Hibernate created a unique index on storage_key with a generated name; look it up first
+SHOW INDEX FROM file_items WHERE Column_name = 'storage_key' AND Non_unique = 0;
+
+-- Then drop it, replacing UK_xxx with the Key_name reported above
+-- ALTER TABLE file_items DROP INDEX UK_xxx;
+
+-- Hibernate (ddl-auto=update) adds the replacement non-unique index idx_file_items_storage_key,
+-- the digest column and the storage_blobs table on the next start
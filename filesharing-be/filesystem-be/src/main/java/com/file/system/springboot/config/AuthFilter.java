@@ -34,10 +34,10 @@ public class AuthFilter extends OncePerRequestFilter {
         String authHeader = request.getHeader("Authorization");
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
-            var userOpt = tokenService.validate(token);
+            var userOpt = tokenService.authenticate(token);
             if (userOpt.isPresent()) {
                 var user = userOpt.get();
-                request.setAttribute("userId", user.getId());
+                request.setAttribute("userId", user.id());
 
                 // INTEGRATE WITH SPRING SECURITY
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
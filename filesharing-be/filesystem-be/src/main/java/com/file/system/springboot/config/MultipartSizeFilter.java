@@ -0,0 +1,54 @@
+package com.file.system.springboot.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// spring.servlet.multipart.max-request-size applies to every multipart endpoint, so it is set for the batch
+// upload; this holds all other multipart requests to their own limit before the container spools any part
+public class MultipartSizeFilter extends OncePerRequestFilter {
+
+    private final String batchPath;
+    private final long maxRequestBytes;
+
+    public MultipartSizeFilter(String batchPath, DataSize maxRequestSize) {
+        this.batchPath = batchPath;
+        this.maxRequestBytes = maxRequestSize.toBytes();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType == null
+                || !contentType.toLowerCase().startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)
+                || request.getRequestURI().equals(batchPath);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        long length = request.getContentLengthLong();
+        // Without a length the container would only stop at the batch limit
+        if (length < 0) {
+            reject(response, HttpStatus.LENGTH_REQUIRED, "Multipart uploads need a Content-Length");
+            return;
+        }
+        if (length > maxRequestBytes) {
+            reject(response, HttpStatus.PAYLOAD_TOO_LARGE, "Upload is larger than " + maxRequestBytes + " bytes");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType("application/json");
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+}
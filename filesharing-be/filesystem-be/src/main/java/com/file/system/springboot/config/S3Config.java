@@ -0,0 +1,47 @@
+package com.file.system.springboot.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.core.checksums.ResponseChecksumValidation;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+import java.net.URI;
+
+@Configuration
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "s3")
+public class S3Config {
+
+    @Bean
+    public S3Client s3Client(@Value("${app.storage.s3.region:us-east-1}") String region,
+                             @Value("${app.storage.s3.endpoint:}") String endpoint,
+                             @Value("${app.storage.s3.path-style-access:false}") boolean pathStyleAccess,
+                             @Value("${app.storage.s3.access-key:}") String accessKey,
+                             @Value("${app.storage.s3.secret-key:}") String secretKey,
+                             @Value("${app.storage.s3.max-connections:64}") int maxConnections) {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .forcePathStyle(pathStyleAccess)
+                .httpClientBuilder(ApacheHttpClient.builder().maxConnections(maxConnections))
+                // Only send checksums S3 insists on; many S3-compatible stores reject the newer defaults
+                .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
+                .responseChecksumValidation(ResponseChecksumValidation.WHEN_REQUIRED);
+
+        // MinIO, Ceph and local mocks live at their own endpoint
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        // Otherwise the default chain applies (environment, instance profile, web identity, ...)
+        if (!accessKey.isBlank()) {
+            builder.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)));
+        }
+        return builder.build();
+    }
+}
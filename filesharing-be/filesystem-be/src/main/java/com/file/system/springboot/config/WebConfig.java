@@ -1,7 +1,11 @@
 package com.file.system.springboot.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
@@ -25,4 +29,14 @@ public class WebConfig {
         source.registerCorsConfiguration("/**", config);
         return new CorsFilter(source);
     }
+
+    // Ahead of every other filter, so an oversized request is turned away before anything reads it
+    @Bean
+    public FilterRegistrationBean<MultipartSizeFilter> multipartSizeFilter(
+            @Value("${app.upload.max-request-size:50MB}") DataSize maxRequestSize) {
+        FilterRegistrationBean<MultipartSizeFilter> registration =
+                new FilterRegistrationBean<>(new MultipartSizeFilter("/api/files/batch", maxRequestSize));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
 }
@@ -2,14 +2,23 @@ package com.file.system.springboot.controller;
 
 import com.file.system.springboot.model.User;
 import com.file.system.springboot.repository.UserRepository;
+import com.file.system.springboot.service.PasswordHasher;
 import com.file.system.springboot.service.TokenService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCrypt;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -18,72 +27,110 @@ public class AuthController {
 
     private final UserRepository userRepository;
     private final TokenService tokenService;
-
-    public AuthController(UserRepository userRepository, TokenService tokenService) {
+    private final PasswordHasher passwordHasher;
+    private final AsyncTaskExecutor taskExecutor;
+    private final Duration retryAfter;
+
+    public AuthController(UserRepository userRepository,
+                          TokenService tokenService,
+                          PasswordHasher passwordHasher,
+                          @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) AsyncTaskExecutor taskExecutor,
+                          @Value("${app.auth.password.retry-after:2s}") Duration retryAfter) {
         this.userRepository = userRepository;
         this.tokenService = tokenService;
+        this.passwordHasher = passwordHasher;
+        this.taskExecutor = taskExecutor;
+        this.retryAfter = retryAfter;
     }
 
     // ================================
     // LOGIN (Uses JSON Body)
     // ================================
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody Map<String, String> body) {
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody Map<String, String> body) {
 
         String email = body.get("email");
         String password = body.get("password");
 
-        return userRepository.findByEmail(email)
-                .filter(u -> BCrypt.checkpw(password, u.getPasswordHash()))
-                .<ResponseEntity<?>>map(user -> {
-                    String token = tokenService.issueToken(user);
-
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("token", token);
-                    response.put("user", Map.of(
-                            "id", user.getId(),
-                            "email", user.getEmail(),
-                            "name", user.getUsername()
-                    ));
-
-                    return ResponseEntity.ok(response);
-                })
-                .orElse(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "Invalid credentials")));
+        Optional<User> found = password == null ? Optional.empty() : userRepository.findByEmail(email);
+        if (found.isEmpty()) {
+            return CompletableFuture.completedFuture(invalidCredentials());
+        }
+        User user = found.get();
+        try {
+            return passwordHasher.check(user.getId(), password, user.getPasswordHash())
+                    .thenApply(matches -> matches ? ResponseEntity.ok(tokenResponse(user)) : invalidCredentials());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(busy());
+        }
     }
 
     // ================================
     // REGISTER (Uses JSON Body)
     // ================================
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody Map<String, String> body) {
+    public CompletableFuture<ResponseEntity<?>> register(@RequestBody Map<String, String> body) {
 
         String name = body.get("name");
         String email = body.get("email");
         String password = body.get("password");
 
-        if (userRepository.existsByEmail(email)) {
-            return ResponseEntity.status(HttpStatus.CONFLICT)
-                    .body(Map.of("error", "Email already registered"));
+        if (password == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Map.of("error", "Password is required")));
         }
 
-        User user = new User();
-        user.setUsername(name);
-        user.setEmail(email);
-        user.setPasswordHash(BCrypt.hashpw(password, BCrypt.gensalt()));
+        if (userRepository.existsByEmail(email)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Email already registered")));
+        }
 
-        user = userRepository.save(user);
+        try {
+            // Saved on the MVC task executor, so a slow database never holds up the hasher threads
+            return passwordHasher.hash(password).thenApplyAsync(hash -> {
+                User user = new User();
+                user.setUsername(name);
+                user.setEmail(email);
+                user.setPasswordHash(hash);
+
+                return ResponseEntity.ok(tokenResponse(userRepository.save(user)));
+            }, taskExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(busy());
+        }
+    }
 
-        String token = tokenService.issueToken(user);
+    // ================================
+    // LOGOUT (Revokes the bearer token)
+    // ================================
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            tokenService.revoke(authHeader.substring(7));
+        }
+        return ResponseEntity.noContent().build();
+    }
 
+    private Map<String, Object> tokenResponse(User user) {
         Map<String, Object> response = new HashMap<>();
-        response.put("token", token);
+        response.put("token", tokenService.issueToken(user));
         response.put("user", Map.of(
                 "id", user.getId(),
                 "email", user.getEmail(),
                 "name", user.getUsername()
         ));
+        return response;
+    }
+
+    private static ResponseEntity<?> invalidCredentials() {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "Invalid credentials"));
+    }
 
-        return ResponseEntity.ok(response);
+    // The password hasher is saturated; clients should back off instead of piling on
+    private ResponseEntity<?> busy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())))
+                .body(Map.of("error", "Too many sign-ins at the moment, please try again shortly"));
     }
 }
@@ -1,11 +1,11 @@
 package com.file.system.springboot.controller;
 
 import com.file.system.springboot.model.FileItem;
+import com.file.system.springboot.service.DownloadService;
 import com.file.system.springboot.service.FileService;
-import com.file.system.springboot.service.StorageService;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -13,6 +13,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/files")
@@ -20,11 +21,11 @@ import java.util.List;
 public class FileController {
 
     private final FileService fileService;
-    private final StorageService storageService;
+    private final DownloadService downloadService;
 
-    public FileController(FileService fileService, StorageService storageService) {
+    public FileController(FileService fileService, DownloadService downloadService) {
         this.fileService = fileService;
-        this.storageService = storageService;
+        this.downloadService = downloadService;
     }
 
     @GetMapping
@@ -32,6 +33,23 @@ public class FileController {
         return fileService.listAll(userId);
     }
 
+    // One page at a time; pass nextCursor back as cursor to get the following page
+    @GetMapping("/page")
+    public ResponseEntity<?> page(@RequestAttribute("userId") Long userId,
+                                  @RequestParam(defaultValue = "name") String sort,
+                                  @RequestParam(defaultValue = "asc") String order,
+                                  @RequestParam(required = false) String cursor,
+                                  @RequestParam(defaultValue = "100") int limit,
+                                  @RequestParam(required = false) Boolean starred,
+                                  @RequestParam(required = false) String mimeType,
+                                  @RequestParam(required = false) Long folderId) {
+        try {
+            return ResponseEntity.ok(fileService.listPage(userId, sort, order, cursor, limit, starred, mimeType, folderId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public FileItem upload(@RequestAttribute("userId") Long userId,
                            @RequestPart("file") MultipartFile file,
@@ -39,6 +57,45 @@ public class FileController {
         return fileService.upload(file, folderId, userId);
     }
 
+    // Many files in one request; the frontend sends a whole drop this way
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadBatch(@RequestAttribute("userId") Long userId,
+                                         @RequestPart("files") List<MultipartFile> files,
+                                         @RequestParam(value = "folderId", required = false) Long folderId) throws IOException {
+        try {
+            return ResponseEntity.ok(fileService.uploadAll(files, folderId, userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Raw request body instead of multipart: nothing is spooled by the servlet container before we see it
+    @PutMapping("/stream")
+    public FileItem uploadStream(@RequestAttribute("userId") Long userId,
+                                 @RequestParam String name,
+                                 @RequestParam(value = "folderId", required = false) Long folderId,
+                                 HttpServletRequest request) throws IOException {
+        return fileService.upload(request.getInputStream(), name, request.getContentType(), folderId, userId);
+    }
+
+    // Lets a client skip sending bytes it has uploaded before, e.g. to copy a file; 404 means it must be uploaded
+    @PostMapping("/instant")
+    public ResponseEntity<?> uploadByDigest(@RequestAttribute("userId") Long userId,
+                                            @RequestParam String name,
+                                            @RequestParam String digest,
+                                            @RequestParam long size,
+                                            @RequestParam(required = false) String mimeType,
+                                            @RequestParam(value = "folderId", required = false) Long folderId) {
+        try {
+            return fileService.uploadByDigest(digest, size, name, mimeType, folderId, userId)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body(Map.of("error", "None of your files matches this digest")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PatchMapping("/{id}")
     public FileItem update(@RequestAttribute("userId") Long userId,
                            @PathVariable Long id,
@@ -54,17 +111,15 @@ public class FileController {
     }
 
     @GetMapping("/{id}/download")
-    public ResponseEntity<Resource> download(@RequestAttribute("userId") Long userId,
-                                             @PathVariable Long id) throws IOException {
+    public void download(@RequestAttribute("userId") Long userId,
+                         @PathVariable Long id,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
         FileItem item = fileService.getById(id, userId).orElseThrow();
-        byte[] content = storageService.load(item.getStorageKey());
-        ByteArrayResource resource = new ByteArrayResource(content);
-        fileService.incrementDownloadCount(id, userId);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + item.getName() + "\"")
-                .contentType(MediaType.parseMediaType(item.getMimeType()))
-                .contentLength(content.length)
-                .body(resource);
+        if (downloadService.countsAsDownload(request)) {
+            fileService.incrementDownloadCount(id, userId);
+        }
+        downloadService.send(item, request, response);
     }
 }
 
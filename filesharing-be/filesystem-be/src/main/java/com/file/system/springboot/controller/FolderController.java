@@ -1,24 +1,49 @@
 package com.file.system.springboot.controller;
 
 import com.file.system.springboot.model.Folder;
+import com.file.system.springboot.repository.FolderStats;
+import com.file.system.springboot.service.ArchiveService;
 import com.file.system.springboot.service.FolderService;
+import com.file.system.springboot.service.FolderSummary;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/folders")
 @CrossOrigin(origins = "*")
 public class FolderController {
     private final FolderService folderService;
+    private final ArchiveService archiveService;
 
-    public FolderController(FolderService folderService) {
+    public FolderController(FolderService folderService, ArchiveService archiveService) {
         this.folderService = folderService;
+        this.archiveService = archiveService;
     }
 
     @GetMapping
     public List<Folder> list(@RequestAttribute("userId") Long userId) { return folderService.listAll(userId); }
 
+    // One page at a time; pass nextCursor back as cursor to get the following page
+    @GetMapping("/page")
+    public ResponseEntity<?> page(@RequestAttribute("userId") Long userId,
+                                  @RequestParam(defaultValue = "name") String sort,
+                                  @RequestParam(defaultValue = "asc") String order,
+                                  @RequestParam(required = false) String cursor,
+                                  @RequestParam(defaultValue = "100") int limit,
+                                  @RequestParam(required = false) Long parentId) {
+        try {
+            return ResponseEntity.ok(folderService.listPage(userId, sort, order, cursor, limit, parentId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping
     public Folder create(@RequestAttribute("userId") Long userId,
                          @RequestParam String name,
@@ -32,6 +57,44 @@ public class FolderController {
         return folderService.rename(id, userId, name);
     }
 
+    // Without parentId the folder moves to the top level
+    @PatchMapping("/{id}/move")
+    public ResponseEntity<?> move(@RequestAttribute("userId") Long userId,
+                                  @PathVariable Long id,
+                                  @RequestParam(required = false) Long parentId) {
+        try {
+            return ResponseEntity.ok(folderService.move(id, userId, parentId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}/breadcrumbs")
+    public List<FolderSummary> breadcrumbs(@RequestAttribute("userId") Long userId, @PathVariable Long id) {
+        return folderService.breadcrumbs(id, userId);
+    }
+
+    @GetMapping("/{id}/subtree")
+    public List<FolderSummary> subtree(@RequestAttribute("userId") Long userId, @PathVariable Long id) {
+        return folderService.subtree(id, userId);
+    }
+
+    @GetMapping("/{id}/stats")
+    public FolderStats stats(@RequestAttribute("userId") Long userId, @PathVariable Long id) {
+        return folderService.stats(id, userId);
+    }
+
+    // The whole subtree as one ZIP, streamed while it is built, so there is no Content-Length
+    @GetMapping("/{id}/archive")
+    public void archive(@RequestAttribute("userId") Long userId,
+                        @PathVariable Long id,
+                        HttpServletResponse response) throws IOException {
+        Folder folder = folderService.getById(id, userId).orElseThrow();
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + folder.getName() + ".zip\"");
+        archiveService.write(folder, response.getOutputStream());
+    }
+
     @DeleteMapping("/{id}")
     public void delete(@RequestAttribute("userId") Long userId,
                        @PathVariable Long id) {
@@ -4,14 +4,18 @@ import com.file.system.springboot.model.FileItem;
 import com.file.system.springboot.model.PasshareSession;
 import com.file.system.springboot.model.PasshareSessionFile;
 import com.file.system.springboot.model.PasshareSessionParticipant;
+import com.file.system.springboot.service.ActiveSessionRegistry.ActiveSession;
+import com.file.system.springboot.service.DownloadService;
 import com.file.system.springboot.service.PasshareSessionService;
-import com.file.system.springboot.service.StorageService;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
+import com.file.system.springboot.service.SessionEventBroker;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -24,11 +28,15 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class PasshareController {
     private final PasshareSessionService sessionService;
-    private final StorageService storageService;
+    private final DownloadService downloadService;
+    private final SessionEventBroker eventBroker;
 
-    public PasshareController(PasshareSessionService sessionService, StorageService storageService) {
+    public PasshareController(PasshareSessionService sessionService,
+                              DownloadService downloadService,
+                              SessionEventBroker eventBroker) {
         this.sessionService = sessionService;
-        this.storageService = storageService;
+        this.downloadService = downloadService;
+        this.eventBroker = eventBroker;
     }
 
     @PostMapping("/sessions")
@@ -82,24 +90,40 @@ public class PasshareController {
     public ResponseEntity<Map<String, Object>> getSession(
             @RequestAttribute("userId") Long userId,
             @PathVariable Long sessionId) {
-        Optional<PasshareSession> sessionOpt = sessionService.getSession(sessionId, userId);
+        Optional<ActiveSession> sessionOpt = sessionService.getSession(sessionId, userId);
         if (sessionOpt.isEmpty()) {
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Session not found or access denied");
             return ResponseEntity.notFound().build();
         }
 
-        PasshareSession session = sessionOpt.get();
+        ActiveSession session = sessionOpt.get();
         Map<String, Object> response = new HashMap<>();
-        response.put("id", session.getId());
-        response.put("code", session.getCode());
-        response.put("creatorId", session.getCreatorId());
-        response.put("createdAt", session.getCreatedAt());
-        response.put("expiresAt", session.getExpiresAt());
-        response.put("active", session.isActive());
+        response.put("id", session.id());
+        response.put("code", session.code());
+        response.put("creatorId", session.creatorId());
+        response.put("createdAt", session.createdAt());
+        response.put("expiresAt", session.expiresAt());
+        response.put("active", session.isOpen());
         return ResponseEntity.ok(response);
     }
 
+    // Server-Sent Events for participant and file changes, so the session page does not have to poll
+    @GetMapping(value = "/sessions/{sessionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> sessionEvents(
+            @RequestAttribute("userId") Long userId,
+            @PathVariable Long sessionId) {
+        Optional<ActiveSession> sessionOpt = sessionService.getSession(sessionId, userId);
+        if (sessionOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!sessionOpt.get().isOpen()) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .header("X-Accel-Buffering", "no") // stream through nginx without buffering
+                .body(eventBroker.subscribe(sessionId, userId));
+    }
+
     @PostMapping("/sessions/{sessionId}/files")
     public ResponseEntity<Map<String, Object>> shareFile(
             @RequestAttribute("userId") Long userId,
@@ -197,31 +221,35 @@ public class PasshareController {
     }
 
     @GetMapping("/sessions/{sessionId}/files/{sessionFileId}/download")
-    public ResponseEntity<Resource> downloadSessionFile(
+    public void downloadSessionFile(
             @RequestAttribute("userId") Long userId,
             @PathVariable Long sessionId,
-            @PathVariable Long sessionFileId) throws IOException {
+            @PathVariable Long sessionFileId,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        FileItem fileItem;
         try {
             PasshareSessionFile sessionFile = sessionService.getSessionFile(sessionId, sessionFileId, userId);
-            FileItem fileItem = sessionFile.getFileItem();
-            
+            fileItem = sessionFile.getFileItem();
+
             // Increment download count
-            sessionService.incrementSessionFileDownloadCount(sessionId, sessionFileId, userId);
-            
-            // Load and serve the file directly - no ownership check needed for session participants
-            byte[] content = storageService.load(fileItem.getStorageKey());
-            ByteArrayResource resource = new ByteArrayResource(content);
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileItem.getName() + "\"")
-                    .contentType(MediaType.parseMediaType(fileItem.getMimeType()))
-                    .contentLength(content.length)
-                    .body(resource);
+            if (downloadService.countsAsDownload(request)) {
+                sessionService.incrementSessionFileDownloadCount(sessionId, sessionFileId, userId);
+            }
         } catch (IllegalArgumentException e) {
-            return ResponseEntity.badRequest().build();
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        // Stream the file directly - no ownership check needed for session participants
+        try {
+            downloadService.send(fileItem, request, response);
         } catch (Exception e) {
             e.printStackTrace();
-            return ResponseEntity.status(500).build();
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
         }
     }
 
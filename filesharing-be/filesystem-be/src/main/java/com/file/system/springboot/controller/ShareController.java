@@ -3,10 +3,12 @@ package com.file.system.springboot.controller;
 import com.file.system.springboot.model.ShareLink;
 import com.file.system.springboot.model.ShareType;
 import com.file.system.springboot.service.ShareService;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/shares")
@@ -21,6 +23,20 @@ public class ShareController {
     @GetMapping
     public List<ShareLink> list(@RequestAttribute("userId") Long userId) { return shareService.listAll(userId); }
 
+    // One page at a time, newest first by default; pass nextCursor back as cursor to get the following page
+    @GetMapping("/page")
+    public ResponseEntity<?> page(@RequestAttribute("userId") Long userId,
+                                  @RequestParam(defaultValue = "createdAt") String sort,
+                                  @RequestParam(defaultValue = "desc") String order,
+                                  @RequestParam(required = false) String cursor,
+                                  @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(shareService.listPage(userId, sort, order, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping
     public ShareLink create(@RequestAttribute("userId") Long userId,
                             @RequestParam Long fileId,
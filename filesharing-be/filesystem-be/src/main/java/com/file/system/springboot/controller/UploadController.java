@@ -0,0 +1,104 @@
+package com.file.system.springboot.controller;
+
+import com.file.system.springboot.model.FileItem;
+import com.file.system.springboot.model.UploadSession;
+import com.file.system.springboot.service.UploadSessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/uploads")
+@CrossOrigin(origins = "*")
+public class UploadController {
+    private final UploadSessionService uploadSessionService;
+
+    public UploadController(UploadSessionService uploadSessionService) {
+        this.uploadSessionService = uploadSessionService;
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> create(@RequestAttribute("userId") Long userId,
+                                                      @RequestParam String fileName,
+                                                      @RequestParam long size,
+                                                      @RequestParam(required = false) String mimeType,
+                                                      @RequestParam(required = false) Long folderId) throws IOException {
+        try {
+            UploadSession session = uploadSessionService.create(fileName, size, mimeType, folderId, userId);
+            return ResponseEntity.ok(toResponse(session, List.of()));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<Map<String, Object>> status(@RequestAttribute("userId") Long userId,
+                                                      @PathVariable String uploadId) {
+        return uploadSessionService.getSession(uploadId, userId)
+                .map(session -> ResponseEntity.ok(toResponse(session, uploadSessionService.getReceivedChunks(uploadId))))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PutMapping("/{uploadId}/chunks/{index}")
+    public ResponseEntity<Map<String, Object>> writeChunk(@RequestAttribute("userId") Long userId,
+                                                          @PathVariable String uploadId,
+                                                          @PathVariable int index,
+                                                          HttpServletRequest request) throws IOException {
+        try {
+            uploadSessionService.writeChunk(uploadId, userId, index, request.getInputStream(), request.getContentLengthLong());
+            Map<String, Object> response = new HashMap<>();
+            response.put("uploadId", uploadId);
+            response.put("index", index);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<?> complete(@RequestAttribute("userId") Long userId,
+                                      @PathVariable String uploadId) throws IOException {
+        try {
+            FileItem item = uploadSessionService.complete(uploadId, userId);
+            return ResponseEntity.ok(item);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Map<String, Object>> abort(@RequestAttribute("userId") Long userId,
+                                                     @PathVariable String uploadId) throws IOException {
+        try {
+            uploadSessionService.abort(uploadId, userId);
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Upload aborted");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    private Map<String, Object> toResponse(UploadSession session, List<Integer> receivedChunks) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("uploadId", session.getId());
+        response.put("fileName", session.getFileName());
+        response.put("size", session.getSize());
+        response.put("chunkSize", session.getChunkSize());
+        response.put("chunkCount", session.getChunkCount());
+        response.put("receivedChunks", receivedChunks);
+        response.put("committedOffset", uploadSessionService.getCommittedOffset(session, receivedChunks));
+        return response;
+    }
+
+    private ResponseEntity<Map<String, Object>> badRequest(IllegalArgumentException e) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+}
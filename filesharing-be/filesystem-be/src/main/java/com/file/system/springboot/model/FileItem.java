@@ -1,14 +1,28 @@
 package com.file.system.springboot.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "file_items")
+// The owner_id composites back the keyset-paginated listings, one per sort key with id as tiebreaker
+@Table(name = "file_items", indexes = {
+        @Index(name = "idx_file_items_storage_key", columnList = "storage_key"),
+        @Index(name = "idx_file_items_owner_digest", columnList = "owner_id, digest"),
+        @Index(name = "idx_file_items_owner_name", columnList = "owner_id, name, id"),
+        @Index(name = "idx_file_items_owner_size", columnList = "owner_id, size, id"),
+        @Index(name = "idx_file_items_owner_uploaded", columnList = "owner_id, uploaded_at, id"),
+        @Index(name = "idx_file_items_owner_downloads", columnList = "owner_id, download_count, id"),
+        @Index(name = "idx_file_items_owner_folder_name", columnList = "owner_id, folder_id, name, id")
+})
 public class FileItem {
+    public static final int ID_ALLOCATION_SIZE = 50;
 
+    // Pooled ids rather than IDENTITY, so Hibernate can batch inserts; MySQL has no sequences,
+    // so Hibernate keeps this one in a single-row file_items_seq table (see FileItemSequenceSeeder)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_items_seq")
+    @SequenceGenerator(name = "file_items_seq", sequenceName = "file_items_seq", allocationSize = FileItem.ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false)
@@ -20,9 +34,20 @@ public class FileItem {
     @Column(nullable = false)
     private String mimeType;
 
-    @Column(nullable = false, unique = true)
+    // Not unique: with content-addressed storage, items with the same bytes share one blob. Not part of
+    // the JSON, as the key (a random UUID followed by the sanitized upload name) is the name on disk
+    @JsonIgnore
+    @Column(name = "storage_key", nullable = false)
     private String storageKey;
 
+    @JsonIgnore
+    @Column(name = "digest", length = 64)
+    private String digest;
+
+    // Copied from the blob: how the stored bytes are encoded at rest, null when stored raw
+    @Column(name = "content_encoding", length = 16)
+    private String contentEncoding;
+
     @Column(nullable = false)
     private Instant uploadedAt = Instant.now();
 
@@ -79,6 +104,22 @@ public class FileItem {
         this.storageKey = storageKey;
     }
 
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
     public Instant getUploadedAt() {
         return uploadedAt;
     }
@@ -6,8 +6,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "folders")
+@Table(name = "folders", indexes = {
+        @Index(name = "idx_folders_owner_name", columnList = "owner_id, name, id"),
+        @Index(name = "idx_folders_owner_created", columnList = "owner_id, created_at, id"),
+        @Index(name = "idx_folders_owner_parent_name", columnList = "owner_id, parent_id, name, id"),
+        @Index(name = "idx_folders_owner_path", columnList = "owner_id, path")
+})
 public class Folder {
+    // Keeps (owner_id, path) within InnoDB's 3072 byte index key limit under utf8mb4
+    public static final int MAX_PATH_LENGTH = 760;
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -32,6 +39,11 @@ public class Folder {
     @Column(name = "owner_id", nullable = false)
     private Long ownerId;
 
+    // Ids from the root down to this folder, "/12/40/97/"; a subtree is every path starting with this one.
+    // Ids never change, so renames leave it alone and only moves rewrite it.
+    @Column(length = MAX_PATH_LENGTH)
+    private String path;
+
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
@@ -52,6 +64,9 @@ public class Folder {
 
     public Long getOwnerId() { return ownerId; }
     public void setOwnerId(Long ownerId) { this.ownerId = ownerId; }
+
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
 }
 
 
@@ -0,0 +1,30 @@
+package com.file.system.springboot.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// Which replica runs a cluster-wide scheduled job, and until when. A replica that dies mid-run gives the
+// job up once its lease runs out.
+@Entity
+@Table(name = "job_leases")
+public class JobLease {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(length = 64)
+    private String holder;
+
+    @Column(name = "leased_until", nullable = false)
+    private Instant leasedUntil = Instant.EPOCH;
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getHolder() { return holder; }
+    public void setHolder(String holder) { this.holder = holder; }
+
+    public Instant getLeasedUntil() { return leasedUntil; }
+    public void setLeasedUntil(Instant leasedUntil) { this.leasedUntil = leasedUntil; }
+}
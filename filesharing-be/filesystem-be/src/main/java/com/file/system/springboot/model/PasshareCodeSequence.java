@@ -0,0 +1,30 @@
+package com.file.system.springboot.model;
+
+import jakarta.persistence.*;
+
+// The counter Passhare session codes are derived from, with the key that turns counter values into codes.
+// A single row; replicas reserve blocks of values from it. The key must never change, or codes made
+// under the old one could be handed out again.
+@Entity
+@Table(name = "passhare_code_sequence")
+public class PasshareCodeSequence {
+
+    @Id
+    @Column(length = 32)
+    private String name;
+
+    @Column(name = "next_value", nullable = false)
+    private long nextValue;
+
+    @Column(name = "permutation_key", nullable = false, length = 64)
+    private String permutationKey;
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public long getNextValue() { return nextValue; }
+    public void setNextValue(long nextValue) { this.nextValue = nextValue; }
+
+    public String getPermutationKey() { return permutationKey; }
+    public void setPermutationKey(String permutationKey) { this.permutationKey = permutationKey; }
+}
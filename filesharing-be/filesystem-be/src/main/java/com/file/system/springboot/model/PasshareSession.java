@@ -6,7 +6,10 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "passhare_sessions")
+@Table(name = "passhare_sessions", indexes = {
+        // Expiry and purge scan only the sessions whose deadline is near or long gone
+        @Index(name = "idx_passhare_sessions_active_expires", columnList = "active, expires_at")
+})
 public class PasshareSession {
 
     @Id
@@ -0,0 +1,29 @@
+package com.file.system.springboot.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// A file reference that was dropped in bulk; BlobReclaimer releases it from storage later
+@Entity
+@Table(name = "pending_blob_releases")
+public class PendingBlobRelease {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "storage_key", nullable = false)
+    private String storageKey;
+
+    @Column(nullable = false)
+    private Instant createdAt = Instant.now();
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getStorageKey() { return storageKey; }
+    public void setStorageKey(String storageKey) { this.storageKey = storageKey; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
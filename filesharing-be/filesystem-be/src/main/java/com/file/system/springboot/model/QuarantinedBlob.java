@@ -0,0 +1,23 @@
+package com.file.system.springboot.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// A stored object nothing referenced when StorageReconciler last looked; purged once it has stayed that way
+@Entity
+@Table(name = "quarantined_blobs", indexes = @Index(name = "idx_quarantined_blobs_found", columnList = "found_at"))
+public class QuarantinedBlob {
+
+    @Id
+    @Column(name = "storage_key")
+    private String storageKey;
+
+    @Column(name = "found_at", nullable = false)
+    private Instant foundAt;
+
+    public String getStorageKey() { return storageKey; }
+    public void setStorageKey(String storageKey) { this.storageKey = storageKey; }
+
+    public Instant getFoundAt() { return foundAt; }
+    public void setFoundAt(Instant foundAt) { this.foundAt = foundAt; }
+}
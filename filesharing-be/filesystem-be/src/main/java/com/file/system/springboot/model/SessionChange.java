@@ -0,0 +1,50 @@
+package com.file.system.springboot.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// A Passhare session event as written by the replica that caused it, so the other replicas can update
+// their session registry and event streams. Rows are only needed for a short while.
+@Entity
+@Table(name = "passhare_session_changes", indexes = {
+        @Index(name = "idx_passhare_session_changes_created_at", columnList = "created_at")
+})
+public class SessionChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false)
+    private Long sessionId;
+
+    @Column(nullable = false, length = 32)
+    private String type;
+
+    @Column(nullable = false, length = 4000)
+    private String data;
+
+    @Column(nullable = false, length = 36)
+    private String origin;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getSessionId() { return sessionId; }
+    public void setSessionId(Long sessionId) { this.sessionId = sessionId; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getData() { return data; }
+    public void setData(String data) { this.data = data; }
+
+    public String getOrigin() { return origin; }
+    public void setOrigin(String origin) { this.origin = origin; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "share_links")
+@Table(name = "share_links", indexes = @Index(name = "idx_share_links_owner_created", columnList = "owner_id, created_at, id"))
 public class ShareLink {
 
     @Id
@@ -18,6 +18,10 @@ public class ShareLink {
     @JoinColumn(name = "file_id")
     private FileItem fileItem;
 
+    // Copy of fileItem.ownerId, so a user's links are found without touching file_items
+    @Column(name = "owner_id")
+    private Long ownerId;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private ShareType shareType = ShareType.PRIVATE;
@@ -46,6 +50,9 @@ public class ShareLink {
     public FileItem getFileItem() { return fileItem; }
     public void setFileItem(FileItem fileItem) { this.fileItem = fileItem; }
 
+    public Long getOwnerId() { return ownerId; }
+    public void setOwnerId(Long ownerId) { this.ownerId = ownerId; }
+
     public ShareType getShareType() { return shareType; }
     public void setShareType(ShareType shareType) { this.shareType = shareType; }
 
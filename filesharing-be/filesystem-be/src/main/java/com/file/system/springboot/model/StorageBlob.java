@@ -0,0 +1,47 @@
+package com.file.system.springboot.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "storage_blobs", indexes = @Index(name = "idx_storage_blobs_digest", columnList = "digest"))
+public class StorageBlob {
+
+    @Id
+    @Column(name = "storage_key")
+    private String storageKey;
+
+    @Column(name = "digest", nullable = false, length = 64)
+    private String digest;
+
+    @Column(nullable = false)
+    private long size;
+
+    // Content-Encoding of the bytes on disk (e.g. gzip), null when stored as uploaded
+    @Column(name = "encoding", length = 16)
+    private String encoding;
+
+    @Column(name = "ref_count", nullable = false)
+    private long refCount;
+
+    @Column(nullable = false)
+    private Instant createdAt = Instant.now();
+
+    public String getStorageKey() { return storageKey; }
+    public void setStorageKey(String storageKey) { this.storageKey = storageKey; }
+
+    public String getDigest() { return digest; }
+    public void setDigest(String digest) { this.digest = digest; }
+
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+
+    public String getEncoding() { return encoding; }
+    public void setEncoding(String encoding) { this.encoding = encoding; }
+
+    public long getRefCount() { return refCount; }
+    public void setRefCount(long refCount) { this.refCount = refCount; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
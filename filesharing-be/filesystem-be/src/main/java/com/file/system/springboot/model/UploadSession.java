@@ -0,0 +1,82 @@
+package com.file.system.springboot.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "upload_sessions")
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "folder_id")
+    private Long folderId;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private String mimeType;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(nullable = false)
+    private int chunkSize;
+
+    @Column(nullable = false, unique = true)
+    private String storageKey;
+
+    // Multipart upload id on object-store backends
+    @Column(name = "backend_upload_id", length = 1024)
+    private String backendUploadId;
+
+    @Column(nullable = false)
+    private Instant createdAt = Instant.now();
+
+    // Last time a chunk arrived; null until the first one
+    @Column(name = "last_activity_at")
+    private Instant lastActivityAt;
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Long getOwnerId() { return ownerId; }
+    public void setOwnerId(Long ownerId) { this.ownerId = ownerId; }
+
+    public Long getFolderId() { return folderId; }
+    public void setFolderId(Long folderId) { this.folderId = folderId; }
+
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public String getMimeType() { return mimeType; }
+    public void setMimeType(String mimeType) { this.mimeType = mimeType; }
+
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+
+    public int getChunkSize() { return chunkSize; }
+    public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+
+    public String getStorageKey() { return storageKey; }
+    public void setStorageKey(String storageKey) { this.storageKey = storageKey; }
+
+    public String getBackendUploadId() { return backendUploadId; }
+    public void setBackendUploadId(String backendUploadId) { this.backendUploadId = backendUploadId; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getLastActivityAt() { return lastActivityAt; }
+    public void setLastActivityAt(Instant lastActivityAt) { this.lastActivityAt = lastActivityAt; }
+
+    public int getChunkCount() {
+        return size == 0 ? 1 : (int) ((size + chunkSize - 1) / chunkSize);
+    }
+}
@@ -1,9 +1,11 @@
 package com.file.system.springboot.model;
 
+import com.file.system.springboot.service.UserChangeListener;
 import jakarta.persistence.*;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserChangeListener.class)
 public class User {
 
     @Id
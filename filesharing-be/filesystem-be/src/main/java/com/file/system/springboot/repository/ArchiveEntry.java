@@ -0,0 +1,7 @@
+package com.file.system.springboot.repository;
+
+import java.time.Instant;
+
+public record ArchiveEntry(Long folderId, String name, String storageKey, String mimeType,
+                           String contentEncoding, Instant uploadedAt) {
+}
@@ -2,15 +2,37 @@ package com.file.system.springboot.repository;
 
 import com.file.system.springboot.model.FileItem;
 import com.file.system.springboot.model.Folder;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface FileItemRepository extends JpaRepository<FileItem, Long> {
+public interface FileItemRepository extends JpaRepository<FileItem, Long>, JpaSpecificationExecutor<FileItem> {
     List<FileItem> findByFolder(Folder folder);
     List<FileItem> findAllByOwnerId(Long ownerId);
     Optional<FileItem> findByIdAndOwnerId(Long id, Long ownerId);
+    Optional<FileItem> findFirstByOwnerIdAndDigestAndSize(Long ownerId, String digest, long size);
+    boolean existsByStorageKey(String storageKey);
+
+    // Walks idx_file_items_storage_key
+    @Query("select distinct f.storageKey from FileItem f where f.storageKey > :after order by f.storageKey")
+    List<String> findStorageKeysAfter(@Param("after") String after, Limit limit);
+
+    @Query("select new com.file.system.springboot.repository.ArchiveEntry(f.folder.id, f.name, f.storageKey, "
+            + "f.mimeType, f.contentEncoding, f.uploadedAt) "
+            + "from FileItem f where f.ownerId = :ownerId and f.folder.id in :folderIds order by f.folder.id, f.id")
+    List<ArchiveEntry> findArchiveEntries(@Param("ownerId") Long ownerId, @Param("folderIds") Collection<Long> folderIds);
+
+    @Modifying
+    @Query("delete from FileItem i where i.ownerId = :ownerId and i.folder.id in "
+            + "(select f.id from Folder f where f.ownerId = :ownerId and f.path like concat(:path, '%'))")
+    int deleteInFolderSubtree(@Param("ownerId") Long ownerId, @Param("path") String path);
 }
 
 
@@ -0,0 +1,5 @@
+package com.file.system.springboot.repository;
+
+// A folder without its collections, for walking a tree without loading entities
+public record FolderNode(Long id, Long parentId, String name) {
+}
@@ -2,14 +2,52 @@ package com.file.system.springboot.repository;
 
 import com.file.system.springboot.model.Folder;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface FolderRepository extends JpaRepository<Folder, Long> {
+public interface FolderRepository extends JpaRepository<Folder, Long>, JpaSpecificationExecutor<Folder> {
     List<Folder> findByParent(Folder parent);
     List<Folder> findAllByOwnerId(Long ownerId);
     Optional<Folder> findByIdAndOwnerId(Long id, Long ownerId);
+
+    List<Folder> findByOwnerIdAndIdIn(Long ownerId, Collection<Long> ids);
+
+    // Parents come before their children in path order
+    List<Folder> findByOwnerIdAndPathStartingWithOrderByPath(Long ownerId, String path);
+
+    @Query("select new com.file.system.springboot.repository.FolderNode(f.id, p.id, f.name) "
+            + "from Folder f left join f.parent p where f.ownerId = :ownerId and f.path like concat(:path, '%') "
+            + "order by f.path")
+    List<FolderNode> findSubtreeNodes(@Param("ownerId") Long ownerId, @Param("path") String path);
+
+    @Query("select new com.file.system.springboot.repository.FolderStats(count(i), coalesce(sum(i.size), 0)) "
+            + "from FileItem i join i.folder f where f.ownerId = :ownerId and f.path like concat(:path, '%')")
+    FolderStats findSubtreeStats(@Param("ownerId") Long ownerId, @Param("path") String path);
+
+    @Query("select coalesce(max(length(f.path)), 0) from Folder f "
+            + "where f.ownerId = :ownerId and f.path like concat(:path, '%')")
+    int findLongestSubtreePath(@Param("ownerId") Long ownerId, @Param("path") String path);
+
+    // Cuts the parent links first so the rows can go in any order despite the self-referencing foreign key
+    @Modifying
+    @Query("update Folder f set f.parent = null where f.ownerId = :ownerId and f.path like concat(:path, '%')")
+    int detachSubtree(@Param("ownerId") Long ownerId, @Param("path") String path);
+
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Folder f where f.ownerId = :ownerId and f.path like concat(:path, '%')")
+    int deleteSubtree(@Param("ownerId") Long ownerId, @Param("path") String path);
+
+    // Swaps the oldPath prefix for newPath on a whole subtree in one statement
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Folder f set f.path = concat(:newPath, substring(f.path, length(:oldPath) + 1)) "
+            + "where f.ownerId = :ownerId and f.path like concat(:oldPath, '%')")
+    int movePaths(@Param("ownerId") Long ownerId, @Param("oldPath") String oldPath, @Param("newPath") String newPath);
 }
 
 
@@ -0,0 +1,5 @@
+package com.file.system.springboot.repository;
+
+// Everything below a folder, nested folders included
+public record FolderStats(Long fileCount, Long totalBytes) {
+}
@@ -0,0 +1,16 @@
+package com.file.system.springboot.repository;
+
+import com.file.system.springboot.model.JobLease;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from JobLease l where l.name = :name")
+    Optional<JobLease> lockByName(@Param("name") String name);
+}
@@ -0,0 +1,16 @@
+package com.file.system.springboot.repository;
+
+import com.file.system.springboot.model.PasshareCodeSequence;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface PasshareCodeSequenceRepository extends JpaRepository<PasshareCodeSequence, String> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from PasshareCodeSequence s where s.name = :name")
+    Optional<PasshareCodeSequence> lockByName(@Param("name") String name);
+}
@@ -1,11 +1,33 @@
 package com.file.system.springboot.repository;
 
 import com.file.system.springboot.model.PasshareSessionFile;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface PasshareSessionFileRepository extends JpaRepository<PasshareSessionFile, Long> {
     List<PasshareSessionFile> findBySessionId(Long sessionId);
+
+    @EntityGraph(attributePaths = "fileItem")
+    Optional<PasshareSessionFile> findWithFileItemById(Long id);
+
+    @Modifying
+    @Query("delete from PasshareSessionFile s where s.session.id = :sessionId and s.id = :id")
+    int deleteFromSession(@Param("sessionId") Long sessionId, @Param("id") Long id);
+
+    @Modifying
+    @Query("delete from PasshareSessionFile s where s.session.id in :sessionIds")
+    int deleteBySessionIds(@Param("sessionIds") Collection<Long> sessionIds);
+
+    @Modifying
+    @Query("delete from PasshareSessionFile s where s.fileItem.id in "
+            + "(select i.id from FileItem i join i.folder f where f.ownerId = :ownerId and f.path like concat(:path, '%'))")
+    int deleteInFolderSubtree(@Param("ownerId") Long ownerId, @Param("path") String path);
 }
 
@@ -2,11 +2,23 @@ package com.file.system.springboot.repository;
 
 import com.file.system.springboot.model.PasshareSessionParticipant;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface PasshareSessionParticipantRepository extends JpaRepository<PasshareSessionParticipant, Long> {
     List<PasshareSessionParticipant> findBySessionId(Long sessionId);
     boolean existsBySessionIdAndUserId(Long sessionId, Long userId);
+
+    @Modifying
+    @Query("delete from PasshareSessionParticipant p where p.session.id = :sessionId and p.userId = :userId")
+    int deleteBySessionIdAndUserId(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query("delete from PasshareSessionParticipant p where p.session.id in :sessionIds")
+    int deleteBySessionIds(@Param("sessionIds") Collection<Long> sessionIds);
 }
 
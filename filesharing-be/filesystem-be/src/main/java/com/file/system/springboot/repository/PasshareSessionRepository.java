@@ -1,12 +1,40 @@
 package com.file.system.springboot.repository;
 
 import com.file.system.springboot.model.PasshareSession;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface PasshareSessionRepository extends JpaRepository<PasshareSession, Long> {
     Optional<PasshareSession> findByCode(String code);
     Optional<PasshareSession> findByCodeAndActiveTrue(String code);
+
+    @Query("select new com.file.system.springboot.repository.SessionDeadline(s.id, s.expiresAt) "
+            + "from PasshareSession s where s.active = true and s.expiresAt < :before")
+    List<SessionDeadline> findDeadlinesBefore(@Param("before") Instant before);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s.id from PasshareSession s where s.id in :ids and s.active = true and s.expiresAt <= :now")
+    List<Long> lockExpired(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+    @Modifying
+    @Query("update PasshareSession s set s.active = false where s.id in :ids")
+    int deactivate(@Param("ids") Collection<Long> ids);
+
+    @Query("select s.id from PasshareSession s where s.active = false and s.expiresAt < :cutoff order by s.expiresAt")
+    List<Long> findEndedBefore(@Param("cutoff") Instant cutoff, Limit limit);
+
+    @Modifying
+    @Query("delete from PasshareSession s where s.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
 }
 
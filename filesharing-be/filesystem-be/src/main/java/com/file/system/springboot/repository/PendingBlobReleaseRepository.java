@@ -0,0 +1,27 @@
+package com.file.system.springboot.repository;
+
+import com.file.system.springboot.model.PendingBlobRelease;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface PendingBlobReleaseRepository extends JpaRepository<PendingBlobRelease, Long> {
+    List<PendingBlobRelease> findByOrderByIdAsc(Limit limit);
+
+    // One row per file, so a blob shared by several of them is released once for each
+    @Modifying
+    @Query(value = "INSERT INTO pending_blob_releases (storage_key, created_at) "
+            + "SELECT i.storage_key, :createdAt FROM file_items i JOIN folders f ON f.id = i.folder_id "
+            + "WHERE f.owner_id = :ownerId AND f.path LIKE CONCAT(:path, '%')", nativeQuery = true)
+    int addFolderSubtree(@Param("ownerId") Long ownerId, @Param("path") String path, @Param("createdAt") Instant createdAt);
+
+    // 1 for the one replica that gets to release the blob
+    @Modifying
+    @Query("delete from PendingBlobRelease r where r.id = :id")
+    int claim(@Param("id") Long id);
+}
@@ -0,0 +1,21 @@
+package com.file.system.springboot.repository;
+
+import com.file.system.springboot.model.QuarantinedBlob;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface QuarantinedBlobRepository extends JpaRepository<QuarantinedBlob, String> {
+    List<QuarantinedBlob> findByFoundAtBeforeOrderByFoundAt(Instant foundAt, Limit limit);
+
+    // Keeps the first sighting when a key is found again, or by another replica
+    @Modifying
+    @Query(value = "INSERT INTO quarantined_blobs (storage_key, found_at) VALUES (:storageKey, :foundAt) "
+            + "ON DUPLICATE KEY UPDATE found_at = found_at", nativeQuery = true)
+    int quarantine(@Param("storageKey") String storageKey, @Param("foundAt") Instant foundAt);
+}
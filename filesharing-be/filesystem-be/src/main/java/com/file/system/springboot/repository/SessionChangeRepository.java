@@ -0,0 +1,18 @@
+package com.file.system.springboot.repository;
+
+import com.file.system.springboot.model.SessionChange;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface SessionChangeRepository extends JpaRepository<SessionChange, Long> {
+    List<SessionChange> findByCreatedAtAfterOrderById(Instant createdAt);
+
+    @Modifying
+    @Query("delete from SessionChange c where c.createdAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,7 @@
+package com.file.system.springboot.repository;
+
+import java.time.Instant;
+
+// When an active Passhare session runs out
+public record SessionDeadline(Long id, Instant expiresAt) {
+}
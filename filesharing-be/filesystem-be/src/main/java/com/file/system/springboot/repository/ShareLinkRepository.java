@@ -2,11 +2,27 @@ package com.file.system.springboot.repository;
 
 import com.file.system.springboot.model.ShareLink;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
-public interface ShareLinkRepository extends JpaRepository<ShareLink, Long> {
+public interface ShareLinkRepository extends JpaRepository<ShareLink, Long>, JpaSpecificationExecutor<ShareLink> {
     Optional<ShareLink> findByLinkId(String linkId);
-}
+    Optional<ShareLink> findByIdAndOwnerId(Long id, Long ownerId);
+    List<ShareLink> findAllByOwnerId(Long ownerId);
 
+    @Modifying
+    @Query("delete from ShareLink s where s.fileItem.id in "
+            + "(select i.id from FileItem i join i.folder f where f.ownerId = :ownerId and f.path like concat(:path, '%'))")
+    int deleteInFolderSubtree(@Param("ownerId") Long ownerId, @Param("path") String path);
 
+    // Links created before share_links.owner_id existed take the owner of their file
+    @Modifying
+    @Query(value = "UPDATE share_links SET owner_id = (SELECT f.owner_id FROM file_items f WHERE f.id = share_links.file_id) "
+            + "WHERE owner_id IS NULL AND file_id IS NOT NULL", nativeQuery = true)
+    int backfillOwnerIds();
+}
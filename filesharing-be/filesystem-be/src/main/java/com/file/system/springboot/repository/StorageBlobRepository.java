@@ -0,0 +1,51 @@
+package com.file.system.springboot.repository;
+
+import com.file.system.springboot.model.StorageBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface StorageBlobRepository extends JpaRepository<StorageBlob, String> {
+    Optional<StorageBlob> findFirstByDigestAndSize(String digest, long size);
+
+    // Also locks the key while no row exists (an InnoDB gap lock), holding off a concurrent insert of it
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from StorageBlob b where b.storageKey = :storageKey")
+    Optional<StorageBlob> lockByStorageKey(String storageKey);
+
+    // Returns 1 when the blob row was created and 2 when an existing blob gained a reference (MySQL semantics)
+    @Modifying
+    @Query(value = "INSERT INTO storage_blobs (storage_key, digest, size, encoding, ref_count, created_at) "
+            + "VALUES (:storageKey, :digest, :size, :encoding, 1, :createdAt) "
+            + "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1", nativeQuery = true)
+    int addReference(String storageKey, String digest, long size, String encoding, Instant createdAt);
+
+    // Only succeeds while the blob is still referenced, so a concurrently released blob is never revived
+    @Modifying
+    @Query("update StorageBlob b set b.refCount = b.refCount + 1 where b.storageKey = :storageKey and b.refCount > 0")
+    int addReferenceIfLive(String storageKey);
+
+    @Modifying
+    @Query("update StorageBlob b set b.refCount = b.refCount - 1 where b.storageKey = :storageKey")
+    int removeReference(String storageKey);
+
+    @Modifying
+    @Query("delete from StorageBlob b where b.storageKey = :storageKey and b.refCount <= 0")
+    int deleteIfUnreferenced(String storageKey);
+
+    @Query("select b.storageKey from StorageBlob b where b.storageKey > :after order by b.storageKey")
+    List<String> findKeysAfter(String after, Limit limit);
+
+    @Query("select coalesce(sum(b.size * b.refCount), 0) from StorageBlob b")
+    long sumLogicalBytes();
+
+    @Query("select coalesce(sum(b.size), 0) from StorageBlob b")
+    long sumPhysicalBytes();
+}
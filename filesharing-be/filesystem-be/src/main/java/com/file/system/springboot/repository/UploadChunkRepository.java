@@ -0,0 +1,20 @@
+package com.file.system.springboot.repository;
+
+import com.file.system.springboot.model.UploadChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface UploadChunkRepository extends JpaRepository<UploadChunk, Long> {
+    boolean existsByUploadIdAndChunkIndex(String uploadId, int chunkIndex);
+    long countByUploadId(String uploadId);
+
+    @Query("select c.chunkIndex from UploadChunk c where c.uploadId = :uploadId order by c.chunkIndex")
+    List<Integer> findChunkIndexes(String uploadId);
+
+    @Modifying
+    @Query("delete from UploadChunk c where c.uploadId = :uploadId")
+    void deleteByUploadId(String uploadId);
+}
@@ -0,0 +1,25 @@
+package com.file.system.springboot.repository;
+
+import com.file.system.springboot.model.UploadSession;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    Optional<UploadSession> findByIdAndOwnerId(String id, Long ownerId);
+    boolean existsByStorageKey(String storageKey);
+
+    @Modifying
+    @Query("update UploadSession s set s.lastActivityAt = :now where s.id = :id")
+    int touch(@Param("id") String id, @Param("now") Instant now);
+
+    // Sessions nothing has been sent to since the cutoff
+    @Query("select s from UploadSession s where coalesce(s.lastActivityAt, s.createdAt) < :cutoff order by s.createdAt")
+    List<UploadSession> findAbandoned(@Param("cutoff") Instant cutoff, Limit limit);
+}
@@ -0,0 +1,174 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.PasshareSession;
+import com.file.system.springboot.repository.PasshareSessionFileRepository;
+import com.file.system.springboot.repository.PasshareSessionParticipantRepository;
+import com.file.system.springboot.repository.PasshareSessionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+// Passhare sessions with their participants and shared files, so membership checks are memory lookups
+// instead of queries. A session is loaded on first access and then kept up to date from SessionEvents:
+// this replica's after they commit, other replicas' through the SessionChangeFeed. Entries are immutable
+// snapshots swapped on change, which keeps reads lock-free. An entry leaves when its session expires or
+// after max-age at the latest, which bounds how long a missed change could go unnoticed.
+@Component
+public class ActiveSessionRegistry {
+    private static final Duration ENDED_LIFETIME = Duration.ofMinutes(1);
+
+    public record SharedFile(Long fileId, Long sharedByUserId) {
+    }
+
+    public record ActiveSession(Long id, String code, Long creatorId, Instant createdAt, Instant expiresAt,
+                                boolean active, Set<Long> participantIds, Map<Long, SharedFile> files) {
+
+        public boolean hasParticipant(Long userId) {
+            return participantIds.contains(userId);
+        }
+
+        // Still usable: not ended, and not past its deadline even if the expiry has not been processed yet
+        public boolean isOpen() {
+            return active && (expiresAt == null || expiresAt.isAfter(Instant.now()));
+        }
+
+        ActiveSession withParticipant(Long userId, boolean present) {
+            Set<Long> ids = new HashSet<>(participantIds);
+            if (present ? !ids.add(userId) : !ids.remove(userId)) {
+                return this;
+            }
+            return new ActiveSession(id, code, creatorId, createdAt, expiresAt, active, Set.copyOf(ids), files);
+        }
+
+        ActiveSession withFile(Long sessionFileId, SharedFile file) {
+            Map<Long, SharedFile> shared = new HashMap<>(files);
+            if (file == null) {
+                shared.remove(sessionFileId);
+            } else {
+                shared.put(sessionFileId, file);
+            }
+            return new ActiveSession(id, code, creatorId, createdAt, expiresAt, active, participantIds, Map.copyOf(shared));
+        }
+    }
+
+    private final PasshareSessionRepository sessionRepository;
+    private final PasshareSessionParticipantRepository participantRepository;
+    private final PasshareSessionFileRepository sessionFileRepository;
+    private final Cache<Long, ActiveSession> sessions;
+
+    public ActiveSessionRegistry(PasshareSessionRepository sessionRepository,
+                                 PasshareSessionParticipantRepository participantRepository,
+                                 PasshareSessionFileRepository sessionFileRepository,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.passhare.registry.max-size:50000}") long maxSize,
+                                 @Value("${app.passhare.registry.max-age:10m}") Duration maxAge) {
+        this.sessionRepository = sessionRepository;
+        this.participantRepository = participantRepository;
+        this.sessionFileRepository = sessionFileRepository;
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<Long, ActiveSession>() {
+                    @Override
+                    public long expireAfterCreate(Long id, ActiveSession session, long currentTime) {
+                        return lifetime(session, maxAge).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, ActiveSession session, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, ActiveSession session, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, sessions, "passhare.sessions");
+    }
+
+    public Optional<ActiveSession> find(Long sessionId) {
+        return Optional.ofNullable(sessions.get(sessionId, this::load));
+    }
+
+    public void addParticipant(Long sessionId, Long userId) {
+        update(sessionId, session -> session.withParticipant(userId, true));
+    }
+
+    public void removeParticipant(Long sessionId, Long userId) {
+        update(sessionId, session -> session.withParticipant(userId, false));
+    }
+
+    public void invalidate(Long sessionId) {
+        sessions.invalidate(sessionId);
+    }
+
+    // Applied to whatever entry is there, even one whose load raced with the change: the updates are
+    // idempotent, and an entry loaded after the change already contains it
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionEvent(SessionEvent event) {
+        Map<String, Object> data = event.data();
+        switch (event.type()) {
+            case SessionEvent.PARTICIPANT_JOINED -> update(event.sessionId(),
+                    session -> session.withParticipant(id(data, "userId"), true));
+            case SessionEvent.PARTICIPANT_LEFT -> update(event.sessionId(),
+                    session -> session.withParticipant(id(data, "userId"), false));
+            case SessionEvent.FILE_SHARED -> update(event.sessionId(), session -> session.withFile(id(data, "id"),
+                    new SharedFile(id(data, "fileId"), id(data, "sharedByUserId"))));
+            case SessionEvent.FILE_REMOVED -> update(event.sessionId(),
+                    session -> session.withFile(id(data, "id"), null));
+            default -> invalidate(event.sessionId());
+        }
+    }
+
+    private void update(Long sessionId, UnaryOperator<ActiveSession> change) {
+        sessions.asMap().computeIfPresent(sessionId, (id, session) -> change.apply(session));
+    }
+
+    private ActiveSession load(Long sessionId) {
+        PasshareSession session = sessionRepository.findById(sessionId).orElse(null);
+        if (session == null) {
+            return null;
+        }
+        Set<Long> participantIds = new HashSet<>();
+        participantRepository.findBySessionId(sessionId).forEach(p -> participantIds.add(p.getUserId()));
+        Map<Long, SharedFile> files = new HashMap<>();
+        sessionFileRepository.findBySessionId(sessionId).forEach(f -> files.put(f.getId(),
+                new SharedFile(f.getFileItem().getId(), f.getSharedByUserId())));
+        return new ActiveSession(session.getId(), session.getCode(), session.getCreatorId(), session.getCreatedAt(),
+                session.getExpiresAt(), session.isActive(), Set.copyOf(participantIds), Map.copyOf(files));
+    }
+
+    private static Duration lifetime(ActiveSession session, Duration maxAge) {
+        if (!session.isOpen()) {
+            // Over, but still asked about for a moment by clients that have not noticed yet
+            return ENDED_LIFETIME;
+        }
+        if (session.expiresAt() == null) {
+            return maxAge;
+        }
+        Duration untilExpiry = Duration.between(Instant.now(), session.expiresAt());
+        return untilExpiry.compareTo(maxAge) < 0 ? untilExpiry : maxAge;
+    }
+
+    // Events from other replicas come back from JSON, where small numbers are Integers
+    private static Long id(Map<String, Object> data, String key) {
+        return ((Number) data.get(key)).longValue();
+    }
+}
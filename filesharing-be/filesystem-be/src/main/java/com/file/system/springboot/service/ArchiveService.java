@@ -0,0 +1,126 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.Folder;
+import com.file.system.springboot.repository.ArchiveEntry;
+import com.file.system.springboot.repository.FileItemRepository;
+import com.file.system.springboot.repository.FolderNode;
+import com.file.system.springboot.repository.FolderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Streams a folder tree as a ZIP while it is being built; nothing is held in memory or on disk beyond
+// one batch of file metadata. ZipOutputStream switches to ZIP64 by itself past 4GB or 65,535 entries.
+@Service
+public class ArchiveService {
+    private static final Logger log = LoggerFactory.getLogger(ArchiveService.class);
+    private static final int FOLDER_BATCH = 500;
+
+    private final FolderRepository folderRepository;
+    private final FileItemRepository fileItemRepository;
+    private final StorageService storageService;
+
+    public ArchiveService(FolderRepository folderRepository,
+                         FileItemRepository fileItemRepository,
+                         StorageService storageService) {
+        this.folderRepository = folderRepository;
+        this.fileItemRepository = fileItemRepository;
+        this.storageService = storageService;
+    }
+
+    public void write(Folder root, OutputStream out) throws IOException {
+        Map<Long, String> paths = folderPaths(root);
+        Set<String> usedNames = new HashSet<>(paths.values());
+
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        for (String path : paths.values()) {
+            zip.putNextEntry(new ZipEntry(path));
+            zip.closeEntry();
+        }
+
+        List<Long> folderIds = new ArrayList<>(paths.keySet());
+        for (int from = 0; from < folderIds.size(); from += FOLDER_BATCH) {
+            List<Long> batch = folderIds.subList(from, Math.min(from + FOLDER_BATCH, folderIds.size()));
+            for (ArchiveEntry file : fileItemRepository.findArchiveEntries(root.getOwnerId(), batch)) {
+                String name = uniqueName(paths.get(file.folderId()), file.name(), usedNames);
+                writeFile(zip, name, file);
+            }
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    // Already compressed formats go in with deflate level 0 rather than STORED: STORED needs each
+    // entry's CRC before its data, which would mean reading every such file twice
+    private void writeFile(ZipOutputStream zip, String name, ArchiveEntry file) throws IOException {
+        InputStream in;
+        try {
+            in = storageService.openDecoded(file.storageKey(), file.contentEncoding());
+        } catch (NoSuchFileException e) {
+            // The response is already streaming, so a missing blob can only be left out
+            log.warn("Leaving {} out of the archive, its content {} is missing", name, file.storageKey());
+            return;
+        }
+        try (in) {
+            ZipEntry entry = new ZipEntry(name);
+            if (file.uploadedAt() != null) {
+                entry.setLastModifiedTime(FileTime.from(file.uploadedAt()));
+            }
+            zip.setLevel(Compression.isPrecompressed(file.mimeType())
+                    ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+            zip.putNextEntry(entry);
+            in.transferTo(zip);
+            zip.closeEntry();
+        }
+    }
+
+    // Directory entry path ("root/child/") of every folder in the subtree, parents before children
+    private Map<Long, String> folderPaths(Folder root) {
+        Map<Long, String> paths = new LinkedHashMap<>();
+        Set<String> used = new HashSet<>();
+        paths.put(root.getId(), sanitize(root.getName()) + "/");
+        for (FolderNode node : folderRepository.findSubtreeNodes(root.getOwnerId(), root.getPath())) {
+            String parentPath = paths.get(node.parentId());
+            if (parentPath != null && !paths.containsKey(node.id())) {
+                paths.put(node.id(), uniqueName(parentPath, node.name(), used) + "/");
+            }
+        }
+        return paths;
+    }
+
+    // Sibling files or folders with the same name become "name (1).ext", "name (2).ext", ...
+    private String uniqueName(String parentPath, String name, Set<String> used) {
+        String clean = sanitize(name);
+        String candidate = parentPath + clean;
+        int dot = clean.lastIndexOf('.');
+        String base = dot > 0 ? clean.substring(0, dot) : clean;
+        String extension = dot > 0 ? clean.substring(dot) : "";
+        for (int n = 1; used.contains(candidate) || used.contains(candidate + "/"); n++) {
+            candidate = parentPath + base + " (" + n + ")" + extension;
+        }
+        used.add(candidate);
+        return candidate;
+    }
+
+    // Names come from users; keep them from escaping their directory when extracted
+    private static String sanitize(String name) {
+        String clean = name == null ? "" : name.replace('/', '_').replace('\\', '_').trim();
+        return clean.isEmpty() || clean.equals(".") || clean.equals("..") ? "_" : clean;
+    }
+}
@@ -0,0 +1,11 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.User;
+
+// What a request knows about its caller; deliberately without the password hash
+public record AuthenticatedUser(Long id, String username, String email) {
+
+    public static AuthenticatedUser of(User user) {
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getEmail());
+    }
+}
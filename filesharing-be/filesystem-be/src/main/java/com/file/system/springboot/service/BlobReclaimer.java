@@ -0,0 +1,64 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.PendingBlobRelease;
+import com.file.system.springboot.repository.PendingBlobReleaseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+// Releases the stored bytes of files deleted in bulk, at most files-per-second of them, so deleting a huge
+// folder never turns into a burst of storage deletes and blob row updates
+@Component
+public class BlobReclaimer {
+    private static final Logger log = LoggerFactory.getLogger(BlobReclaimer.class);
+
+    private final PendingBlobReleaseRepository pendingBlobReleaseRepository;
+    private final StorageService storageService;
+    private final TransactionTemplate transactionTemplate;
+    private final int filesPerSecond;
+
+    public BlobReclaimer(PendingBlobReleaseRepository pendingBlobReleaseRepository,
+                         StorageService storageService,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.storage.reclaim.files-per-second:200}") int filesPerSecond) {
+        this.pendingBlobReleaseRepository = pendingBlobReleaseRepository;
+        this.storageService = storageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.filesPerSecond = Math.max(1, filesPerSecond);
+    }
+
+    @Scheduled(fixedDelay = 1000)
+    public void reclaim() {
+        List<PendingBlobRelease> batch = pendingBlobReleaseRepository.findByOrderByIdAsc(Limit.of(filesPerSecond));
+        for (PendingBlobRelease pending : batch) {
+            try {
+                // Claim and release commit together; a failed release stays queued for the next run
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (pendingBlobReleaseRepository.claim(pending.getId()) == 1) {
+                        release(pending.getStorageKey());
+                    }
+                });
+            } catch (RuntimeException e) {
+                log.warn("Could not release {}, retrying later", pending.getStorageKey(), e);
+                return;
+            }
+        }
+    }
+
+    private void release(String storageKey) {
+        try {
+            storageService.release(storageKey);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
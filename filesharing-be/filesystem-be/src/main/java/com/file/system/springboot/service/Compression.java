@@ -0,0 +1,71 @@
+package com.file.system.springboot.service;
+
+import java.util.Set;
+import java.util.zip.Deflater;
+
+final class Compression {
+    static final String GZIP = "gzip";
+
+    private static final int MIN_SAMPLE = 1024;
+    private static final Set<String> COMPRESSIBLE_APPLICATION_TYPES = Set.of(
+            "application/json", "application/xml", "application/javascript", "application/x-ndjson",
+            "application/sql", "application/x-yaml", "application/yaml", "application/csv",
+            "application/x-sh", "image/svg+xml");
+    private static final Set<String> PRECOMPRESSED_APPLICATION_TYPES = Set.of(
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-7z-compressed",
+            "application/x-rar-compressed", "application/vnd.rar", "application/x-bzip2", "application/x-xz",
+            "application/zstd", "application/pdf", "application/epub+zip", "application/java-archive",
+            "application/vnd.android.package-archive");
+
+    private Compression() {
+    }
+
+    // Text-like types only, and only when a trial deflate of the leading sample actually shrinks it
+    static boolean worthCompressing(String mimeType, byte[] sample, double maxRatio) {
+        if (sample.length < MIN_SAMPLE || !isCompressibleType(mimeType)) {
+            return false;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(sample);
+            deflater.finish();
+            byte[] buffer = new byte[sample.length];
+            int compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(buffer);
+                if (compressed > sample.length * maxRatio) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // Formats that already carry their own compression; deflating them again only burns CPU
+    static boolean isPrecompressed(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        String type = mimeType.split(";", 2)[0].trim().toLowerCase();
+        if (type.equals("image/svg+xml") || type.equals("image/bmp") || type.equals("image/tiff")
+                || type.equals("audio/wav") || type.equals("audio/x-wav")) {
+            return false;
+        }
+        return type.startsWith("image/") || type.startsWith("video/") || type.startsWith("audio/")
+                || PRECOMPRESSED_APPLICATION_TYPES.contains(type)
+                // docx, xlsx, odt and friends are zip containers
+                || type.startsWith("application/vnd.openxmlformats-officedocument.")
+                || type.startsWith("application/vnd.oasis.opendocument.");
+    }
+
+    private static boolean isCompressibleType(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        String type = mimeType.split(";", 2)[0].trim().toLowerCase();
+        return type.startsWith("text/") || COMPRESSIBLE_APPLICATION_TYPES.contains(type)
+                || type.endsWith("+json") || type.endsWith("+xml");
+    }
+}
@@ -0,0 +1,89 @@
+package com.file.system.springboot.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Collects download counts in memory and writes them behind the requests, so a download never waits on
+// (or contends for) its row. Counts not yet flushed are lost if the process dies without shutting down.
+@Component
+public class DownloadCounter {
+    private static final Logger log = LoggerFactory.getLogger(DownloadCounter.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, LongAdder> fileCounts = new ConcurrentHashMap<>();
+    private final Map<Long, LongAdder> sessionFileCounts = new ConcurrentHashMap<>();
+
+    public DownloadCounter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public void recordFileDownload(Long fileId) {
+        add(fileCounts, fileId, 1);
+    }
+
+    public void recordSessionFileDownload(Long sessionFileId) {
+        add(sessionFileCounts, sessionFileId, 1);
+    }
+
+    @Scheduled(fixedDelayString = "${app.downloads.flush-interval:5s}")
+    public void flush() {
+        flush(fileCounts, "UPDATE file_items SET download_count = download_count + ? WHERE id = ?");
+        flush(sessionFileCounts, "UPDATE passhare_session_files SET download_count = download_count + ? WHERE id = ?");
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void add(Map<Long, LongAdder> counts, Long id, long delta) {
+        counts.computeIfAbsent(id, key -> new LongAdder()).add(delta);
+    }
+
+    private void flush(Map<Long, LongAdder> counts, String sql) {
+        // Sorted by id so that replicas flushing at the same time lock rows in the same order
+        Map<Long, Long> deltas = new TreeMap<>();
+        counts.forEach((id, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta > 0) {
+                deltas.put(id, delta);
+            } else if (counts.remove(id, adder)) {
+                // Idle for a whole interval; keep whatever raced in while it was being dropped
+                long late = adder.sumThenReset();
+                if (late > 0) {
+                    add(counts, id, late);
+                }
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((id, delta) -> args.add(new Object[]{delta, id}));
+        try {
+            // One transaction, so a failed batch can be retried as a whole without counting anything twice
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, args));
+        } catch (DataAccessException | TransactionException e) {
+            deltas.forEach((id, delta) -> add(counts, id, delta));
+            log.warn("Could not flush {} download counts, retrying later", deltas.size(), e);
+        }
+    }
+}
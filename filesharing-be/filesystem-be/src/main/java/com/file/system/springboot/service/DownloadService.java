@@ -0,0 +1,279 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.FileItem;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+public class DownloadService {
+    // Tomcat exposes sendfile through these request attributes (see DefaultServlet)
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private final StorageService storageService;
+    private final HotFileCache hotFileCache;
+
+    public DownloadService(StorageService storageService, HotFileCache hotFileCache) {
+        this.storageService = storageService;
+        this.hotFileCache = hotFileCache;
+    }
+
+    // Seeking in a media player issues many range requests; only the first one counts as a download
+    public boolean countsAsDownload(HttpServletRequest request) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return true;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.isEmpty() || ranges.get(0).getRangeStart(Long.MAX_VALUE) == 0;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    public void send(FileItem item, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (item.getContentEncoding() != null) {
+            sendEncoded(item, request, response);
+            return;
+        }
+
+        String storageKey = item.getStorageKey();
+        long length = storageService.size(storageKey);
+        String etag = etag(storageKey, null);
+
+        writeHeaders(item, etag, response);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, item)) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(item.getMimeType());
+            response.setContentLengthLong(length);
+            transfer(storageKey, length, 0, length, request, response);
+            return;
+        }
+
+        List<long[]> regions;
+        try {
+            regions = toRegions(HttpRange.parseRanges(rangeHeader), length);
+        } catch (IllegalArgumentException e) {
+            regions = List.of();
+        }
+        if (regions.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (regions.size() == 1) {
+            long start = regions.get(0)[0];
+            long end = regions.get(0)[1];
+            response.setContentType(item.getMimeType());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            response.setContentLengthLong(end - start + 1);
+            transfer(storageKey, length, start, end - start + 1, request, response);
+        } else {
+            sendMultipart(storageKey, item.getMimeType(), length, regions, response);
+        }
+    }
+
+    // Blobs compressed at rest: clients that accept the encoding get the stored bytes untouched, everyone
+    // else a decompressing stream. Ranges are not offered, they would have to be computed on decoded bytes.
+    private void sendEncoded(FileItem item, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String storageKey = item.getStorageKey();
+        String encoding = item.getContentEncoding();
+        boolean passThrough = acceptsEncoding(request.getHeader(HttpHeaders.ACCEPT_ENCODING), encoding);
+
+        writeHeaders(item, etag(storageKey, passThrough ? encoding : null), response);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(item.getMimeType());
+
+        if (passThrough) {
+            long length = storageService.size(storageKey);
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+            response.setContentLengthLong(length);
+            transfer(storageKey, length, 0, length, request, response);
+            return;
+        }
+        response.setContentLengthLong(item.getSize());
+        try (InputStream in = storageService.openDecoded(storageKey, encoding)) {
+            in.transferTo(response.getOutputStream());
+        }
+    }
+
+    private void writeHeaders(FileItem item, String etag, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + item.getName() + "\"");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (item.getUploadedAt() != null) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, item.getUploadedAt().toEpochMilli());
+        }
+    }
+
+    // Each representation needs its own entity tag
+    private String etag(String storageKey, String encoding) {
+        String hash = DigestUtils.md5DigestAsHex(storageKey.getBytes(StandardCharsets.UTF_8));
+        return "\"" + hash + (encoding != null ? "-" + encoding : "") + "\"";
+    }
+
+    private boolean acceptsEncoding(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim();
+            boolean rejected = false;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=") && param.substring(2).trim().matches("0(\\.0{0,3})?")) {
+                    rejected = true;
+                }
+            }
+            if (coding.equalsIgnoreCase(encoding)) {
+                return !rejected;
+            }
+            if (coding.equals("*")) {
+                wildcard = !rejected;
+            }
+        }
+        return wildcard;
+    }
+
+    private void sendMultipart(String storageKey, String mimeType, long length, List<long[]> regions,
+                               HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(regions.size());
+        long contentLength = 0;
+        for (long[] region : regions) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + mimeType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + region[0] + "-" + region[1] + "/" + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + region[1] - region[0] + 1;
+        }
+        byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += trailer.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        ByteBuffer cached = hotFileCache.get(storageKey, length, () -> storageService.readDirect(storageKey));
+        for (int i = 0; i < regions.size(); i++) {
+            long[] region = regions.get(i);
+            out.write(partHeaders.get(i));
+            long count = region[1] - region[0] + 1;
+            if (cached != null) {
+                write(cached, region[0], count, channel);
+            } else {
+                storageService.transferTo(storageKey, region[0], count, channel);
+            }
+        }
+        out.write(trailer);
+    }
+
+    private void transfer(String storageKey, long length, long start, long count, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        ByteBuffer cached = hotFileCache.get(storageKey, length, () -> storageService.readDirect(storageKey));
+        if (cached != null) {
+            write(cached, start, count, Channels.newChannel(response.getOutputStream()));
+            return;
+        }
+        Optional<Path> localPath = storageService.localPath(storageKey);
+        if (localPath.isPresent() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            // The connector writes the file straight from the page cache to the socket once we return
+            request.setAttribute(SENDFILE_FILENAME_ATTR, localPath.get().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + count);
+            return;
+        }
+        storageService.transferTo(storageKey, start, count, Channels.newChannel(response.getOutputStream()));
+    }
+
+    // Slices a view of the cached buffer so concurrent readers never share a position
+    private void write(ByteBuffer cached, long start, long count, WritableByteChannel channel) throws IOException {
+        ByteBuffer region = cached.duplicate()
+                .limit(Math.toIntExact(start + count))
+                .position(Math.toIntExact(start));
+        while (region.hasRemaining()) {
+            channel.write(region);
+        }
+    }
+
+    private boolean ifRangeMatches(String ifRange, String etag, FileItem item) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range requires a strong comparison
+            return ifRange.equals(etag);
+        }
+        if (item.getUploadedAt() == null) {
+            return false;
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return date.toEpochSecond() == item.getUploadedAt().getEpochSecond();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    // Drops unsatisfiable ranges and coalesces overlapping or adjacent ones (RFC 9110, section 14.2)
+    private List<long[]> toRegions(List<HttpRange> ranges, long length) {
+        List<long[]> regions = new ArrayList<>();
+        for (HttpRange range : ranges) {
+            if (length == 0) {
+                break;
+            }
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            if (start >= length || start > end) {
+                continue;
+            }
+            regions.add(new long[]{start, end});
+        }
+        regions.sort(Comparator.comparingLong(r -> r[0]));
+
+        List<long[]> merged = new ArrayList<>();
+        for (long[] region : regions) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && region[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], region[1]);
+            } else {
+                merged.add(region);
+            }
+        }
+        return merged;
+    }
+}
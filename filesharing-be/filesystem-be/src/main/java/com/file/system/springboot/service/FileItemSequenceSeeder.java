@@ -0,0 +1,41 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.FileItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// file_items ids used to come from AUTO_INCREMENT. The table-backed sequence that replaced it starts at 1,
+// so move it past the existing rows. Runs once all singletons (and so Hibernate's schema update) are up,
+// before the web server accepts requests; a no-op once the sequence is ahead.
+@Component
+public class FileItemSequenceSeeder implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(FileItemSequenceSeeder.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FileItemSequenceSeeder(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"MySQL".equalsIgnoreCase(database) && !"MariaDB".equalsIgnoreCase(database)) {
+            // Databases with real sequences are only used for fresh test schemas
+            return;
+        }
+        // The pooled optimizer hands out (next_val - allocationSize, next_val], hence the + allocationSize
+        jdbcTemplate.update("INSERT INTO file_items_seq (next_val) SELECT COALESCE(MAX(id), 0) + ? FROM file_items "
+                + "WHERE NOT EXISTS (SELECT 1 FROM file_items_seq)", FileItem.ID_ALLOCATION_SIZE);
+        int updated = jdbcTemplate.update("UPDATE file_items_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + ? FROM file_items) "
+                + "WHERE next_val < (SELECT COALESCE(MAX(id), 0) + ? FROM file_items)",
+                FileItem.ID_ALLOCATION_SIZE, FileItem.ID_ALLOCATION_SIZE);
+        if (updated > 0) {
+            log.info("Moved file_items_seq past the existing file_items ids");
+        }
+    }
+}
@@ -4,49 +4,224 @@ import com.file.system.springboot.model.FileItem;
 import com.file.system.springboot.model.Folder;
 import com.file.system.springboot.repository.FileItemRepository;
 import com.file.system.springboot.repository.FolderRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.IntStream;
 
 @Service
 public class FileService {
+    private static final Map<String, Class<?>> FILE_SORT_KEYS = Map.of(
+            "name", String.class, "size", Long.class, "uploadedAt", Instant.class, "downloadCount", Long.class);
+
     private final FileItemRepository fileItemRepository;
     private final FolderRepository folderRepository;
     private final StorageService storageService;
+    private final DownloadCounter downloadCounter;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchFiles;
+    private final int batchParallelism;
 
     public FileService(FileItemRepository fileItemRepository,
                        FolderRepository folderRepository,
-                       StorageService storageService) {
+                       StorageService storageService,
+                       DownloadCounter downloadCounter,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${app.upload.batch.max-files:500}") int maxBatchFiles,
+                       @Value("${app.upload.batch.parallelism:32}") int batchParallelism) {
         this.fileItemRepository = fileItemRepository;
         this.folderRepository = folderRepository;
         this.storageService = storageService;
+        this.downloadCounter = downloadCounter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxBatchFiles = maxBatchFiles;
+        this.batchParallelism = batchParallelism;
     }
 
-    @Transactional
     public FileItem upload(MultipartFile file, Long folderId, Long ownerId) throws IOException {
-        String storageKey = storageService.store(file);
+        return upload(file.getInputStream(), file.getOriginalFilename(), file.getContentType(), folderId, ownerId);
+    }
+
+    // The bytes are stored before the transaction starts, so a slow upload never holds a database connection
+    public FileItem upload(InputStream in, String name, String mimeType, Long folderId, Long ownerId) throws IOException {
+        StagedObject staged = storageService.stage(in, name, mimeType);
+        StoredObject stored;
+        try {
+            stored = storageService.store(staged);
+        } finally {
+            storageService.discard(staged);
+        }
+        FileItem item = null;
+        try {
+            item = transactionTemplate.execute(status ->
+                    register(storageService.register(stored), name, staged.mimeType(), folderId, ownerId));
+            return item;
+        } finally {
+            storageService.discard(stored, item != null ? item.getStorageKey() : null);
+        }
+    }
+
+    // Stages and stores all parts concurrently, then registers them and inserts their rows in one transaction,
+    // which Hibernate sends as batched inserts. All or nothing: one bad part fails the batch.
+    public List<FileItem> uploadAll(List<MultipartFile> files, Long folderId, Long ownerId) throws IOException {
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No files to upload");
+        }
+        if (files.size() > maxBatchFiles) {
+            throw new IllegalArgumentException("At most " + maxBatchFiles + " files can be uploaded at once");
+        }
+
+        List<StoredUpload> uploads = storeAll(files);
+        List<FileItem> items = null;
+        try {
+            items = transactionTemplate.execute(status -> {
+                Folder folder = folderId != null ? folderRepository.findById(folderId).orElseThrow() : null;
+                // Existing blob rows are locked in digest order, so overlapping batches cannot deadlock on them
+                StoredObject[] registered = new StoredObject[uploads.size()];
+                List<Integer> order = IntStream.range(0, uploads.size()).boxed()
+                        .sorted(Comparator.comparing(i -> uploads.get(i).stored().digest()))
+                        .toList();
+                for (int i : order) {
+                    registered[i] = storageService.register(uploads.get(i).stored());
+                }
+
+                List<FileItem> batch = new ArrayList<>(uploads.size());
+                for (int i = 0; i < uploads.size(); i++) {
+                    StoredUpload upload = uploads.get(i);
+                    batch.add(newItem(registered[i], upload.name(), upload.mimeType(), folder, ownerId));
+                }
+                return fileItemRepository.saveAll(batch);
+            });
+            return items;
+        } finally {
+            for (int i = 0; i < uploads.size(); i++) {
+                storageService.discard(uploads.get(i).stored(), items != null ? items.get(i).getStorageKey() : null);
+            }
+        }
+    }
+
+    private record StoredUpload(String name, String mimeType, StoredObject stored) {
+    }
+
+    // One virtual thread per part; the semaphore only bounds open files and transfers, not threads
+    private List<StoredUpload> storeAll(List<MultipartFile> files) throws IOException {
+        Semaphore permits = new Semaphore(batchParallelism);
+        List<Future<StoredUpload>> futures = new ArrayList<>(files.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (MultipartFile file : files) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try (InputStream in = file.getInputStream()) {
+                        StagedObject staged = storageService.stage(in, file.getOriginalFilename(), file.getContentType());
+                        try {
+                            return new StoredUpload(file.getOriginalFilename(), staged.mimeType(), storageService.store(staged));
+                        } finally {
+                            storageService.discard(staged);
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+
+        List<StoredUpload> stored = new ArrayList<>(files.size());
+        Throwable failure = null;
+        for (Future<StoredUpload> future : futures) {
+            if (future.state() == Future.State.SUCCESS) {
+                stored.add(future.resultNow());
+            } else if (failure == null) {
+                failure = future.exceptionNow();
+            }
+        }
+        if (failure == null) {
+            return stored;
+        }
+        for (StoredUpload upload : stored) {
+            storageService.discard(upload.stored(), null);
+        }
+        if (failure instanceof IOException e) {
+            throw e;
+        }
+        throw new IOException("Could not store upload", failure);
+    }
+
+    // Only the caller's own files are looked at: matching anyone's content would hand out files to whoever
+    // knows their digest, and tell them the content is stored here
+    @Transactional
+    public Optional<FileItem> uploadByDigest(String digest, long size, String name, String mimeType, Long folderId, Long ownerId) {
+        if (digest == null || !digest.matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("Digest must be a hex-encoded SHA-256");
+        }
+        return fileItemRepository.findFirstByOwnerIdAndDigestAndSize(ownerId, digest.toLowerCase(), size)
+                .flatMap(existing -> storageService.reference(existing.getStorageKey()))
+                .map(stored -> register(stored, name, mimeType, folderId, ownerId));
+    }
+
+    @Transactional
+    public FileItem register(StoredObject stored, String name, String mimeType, Long folderId, Long ownerId) {
+        Folder folder = folderId != null ? folderRepository.findById(folderId).orElseThrow() : null;
+        return fileItemRepository.save(newItem(stored, name, mimeType, folder, ownerId));
+    }
+
+    private FileItem newItem(StoredObject stored, String name, String mimeType, Folder folder, Long ownerId) {
         FileItem item = new FileItem();
-        item.setName(file.getOriginalFilename());
-        item.setSize(file.getSize());
-        item.setMimeType(Optional.ofNullable(file.getContentType()).orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE));
-        item.setStorageKey(storageKey);
+        item.setName(name);
+        item.setSize(stored.size());
+        item.setMimeType(Optional.ofNullable(mimeType).orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE));
+        item.setStorageKey(stored.storageKey());
+        item.setDigest(stored.digest());
+        item.setContentEncoding(stored.encoding());
         item.setOwnerId(ownerId);
-        if (folderId != null) {
-            Folder folder = folderRepository.findById(folderId).orElseThrow();
-            item.setFolder(folder);
-        }
-        return fileItemRepository.save(item);
+        item.setFolder(folder);
+        return item;
     }
 
     public List<FileItem> listAll(Long ownerId) {
         return fileItemRepository.findAllByOwnerId(ownerId);
     }
 
+    // Keyset pagination over the owner's composite indexes: every page is a range scan after the cursor
+    @Transactional(readOnly = true)
+    public ListingPage<FileSummary> listPage(Long ownerId, String sort, String order, String cursor, int limit,
+                                             Boolean starred, String mimeTypePrefix, Long folderId) {
+        KeysetScrollPosition position = KeysetCursor.position(cursor, sort, FILE_SORT_KEYS, limit);
+        Specification<FileItem> spec = (root, query, cb) -> cb.equal(root.get("ownerId"), ownerId);
+        if (starred != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("starred"), starred));
+        }
+        if (mimeTypePrefix != null && !mimeTypePrefix.isBlank()) {
+            String pattern = mimeTypePrefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            spec = spec.and((root, query, cb) -> cb.like(root.get("mimeType"), pattern, '\\'));
+        }
+        if (folderId != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("folder").get("id"), folderId));
+        }
+        Window<FileItem> window = fileItemRepository.findBy(spec,
+                q -> q.sortBy(KeysetCursor.sort(sort, order)).limit(limit).scroll(position));
+        return ListingPage.of(window, FileSummary::of);
+    }
+
     public Optional<FileItem> getById(Long id, Long ownerId) {
         return fileItemRepository.findByIdAndOwnerId(id, ownerId);
     }
@@ -59,17 +234,15 @@ public class FileService {
         return fileItemRepository.save(item);
     }
 
-    @Transactional
+    // The caller has already checked that the file belongs to ownerId; the count reaches the row on the next flush
     public void incrementDownloadCount(Long id, Long ownerId) {
-        FileItem item = fileItemRepository.findByIdAndOwnerId(id, ownerId).orElseThrow();
-        item.setDownloadCount(item.getDownloadCount() + 1);
-        fileItemRepository.save(item);
+        downloadCounter.recordFileDownload(id);
     }
 
     @Transactional
     public void delete(Long id, Long ownerId) throws IOException {
         FileItem item = fileItemRepository.findByIdAndOwnerId(id, ownerId).orElseThrow();
-        storageService.delete(item.getStorageKey());
+        storageService.release(item.getStorageKey());
         fileItemRepository.delete(item);
     }
 }
@@ -0,0 +1,15 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.FileItem;
+
+import java.time.Instant;
+
+// What listings return instead of the entity, so no folder graph is pulled into the response
+public record FileSummary(Long id, String name, long size, String mimeType, Instant uploadedAt,
+                          boolean starred, long downloadCount, Long folderId) {
+
+    static FileSummary of(FileItem item) {
+        return new FileSummary(item.getId(), item.getName(), item.getSize(), item.getMimeType(), item.getUploadedAt(),
+                item.isStarred(), item.getDownloadCount(), item.getFolder() != null ? item.getFolder().getId() : null);
+    }
+}
@@ -0,0 +1,46 @@
+package com.file.system.springboot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Fills folders.path for folders created before the column existed, one level of the tree per pass:
+// a folder is ready once its parent has a path. Costs one empty query once every folder has one.
+@Component
+public class FolderPathBackfill implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(FolderPathBackfill.class);
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FolderPathBackfill(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        int total = 0;
+        while (true) {
+            List<Object[]> paths = jdbcTemplate.query("SELECT c.id, p.path FROM folders c "
+                            + "LEFT JOIN folders p ON p.id = c.parent_id "
+                            + "WHERE c.path IS NULL AND (c.parent_id IS NULL OR p.path IS NOT NULL) LIMIT " + BATCH_SIZE,
+                    (rs, rowNum) -> {
+                        long id = rs.getLong(1);
+                        String parentPath = rs.getString(2);
+                        return new Object[]{(parentPath != null ? parentPath : "/") + id + "/", id};
+                    });
+            if (paths.isEmpty()) {
+                break;
+            }
+            jdbcTemplate.batchUpdate("UPDATE folders SET path = ? WHERE id = ?", paths);
+            total += paths.size();
+        }
+        if (total > 0) {
+            log.info("Backfilled path on {} folders", total);
+        }
+    }
+}
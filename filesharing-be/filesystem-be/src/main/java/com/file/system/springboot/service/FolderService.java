@@ -1,19 +1,52 @@
 package com.file.system.springboot.service;
 
 import com.file.system.springboot.model.Folder;
+import com.file.system.springboot.repository.FileItemRepository;
 import com.file.system.springboot.repository.FolderRepository;
+import com.file.system.springboot.repository.FolderStats;
+import com.file.system.springboot.repository.PasshareSessionFileRepository;
+import com.file.system.springboot.repository.PendingBlobReleaseRepository;
+import com.file.system.springboot.repository.ShareLinkRepository;
+import com.file.system.springboot.repository.UserRepository;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class FolderService {
+    private static final Map<String, Class<?>> FOLDER_SORT_KEYS = Map.of("name", String.class, "createdAt", Instant.class);
+
     private final FolderRepository folderRepository;
+    private final UserRepository userRepository;
+    private final FileItemRepository fileItemRepository;
+    private final ShareLinkRepository shareLinkRepository;
+    private final PasshareSessionFileRepository sessionFileRepository;
+    private final PendingBlobReleaseRepository pendingBlobReleaseRepository;
 
-    public FolderService(FolderRepository folderRepository) {
+    public FolderService(FolderRepository folderRepository,
+                         UserRepository userRepository,
+                         FileItemRepository fileItemRepository,
+                         ShareLinkRepository shareLinkRepository,
+                         PasshareSessionFileRepository sessionFileRepository,
+                         PendingBlobReleaseRepository pendingBlobReleaseRepository) {
         this.folderRepository = folderRepository;
+        this.userRepository = userRepository;
+        this.fileItemRepository = fileItemRepository;
+        this.shareLinkRepository = shareLinkRepository;
+        this.sessionFileRepository = sessionFileRepository;
+        this.pendingBlobReleaseRepository = pendingBlobReleaseRepository;
     }
 
     @Transactional
@@ -21,17 +54,33 @@ public class FolderService {
         Folder folder = new Folder();
         folder.setName(name);
         folder.setOwnerId(ownerId);
+        Folder parent = null;
         if (parentId != null) {
-            Folder parent = folderRepository.findById(parentId).orElseThrow();
+            parent = folderRepository.findByIdAndOwnerId(parentId, ownerId).orElseThrow();
             folder.setParent(parent);
         }
-        return folderRepository.save(folder);
+        // The path ends with the folder's own id, which the insert assigns
+        Folder saved = folderRepository.save(folder);
+        saved.setPath(childPath(parent, saved.getId()));
+        return saved;
     }
 
     public List<Folder> listAll(Long ownerId) {
         return folderRepository.findAllByOwnerId(ownerId);
     }
 
+    @Transactional(readOnly = true)
+    public ListingPage<FolderSummary> listPage(Long ownerId, String sort, String order, String cursor, int limit, Long parentId) {
+        KeysetScrollPosition position = KeysetCursor.position(cursor, sort, FOLDER_SORT_KEYS, limit);
+        Specification<Folder> spec = (root, query, cb) -> cb.equal(root.get("ownerId"), ownerId);
+        if (parentId != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("parent").get("id"), parentId));
+        }
+        Window<Folder> window = folderRepository.findBy(spec,
+                q -> q.sortBy(KeysetCursor.sort(sort, order)).limit(limit).scroll(position));
+        return ListingPage.of(window, FolderSummary::of);
+    }
+
     public Optional<Folder> getById(Long id, Long ownerId) {
         return folderRepository.findByIdAndOwnerId(id, ownerId);
     }
@@ -43,11 +92,106 @@ public class FolderService {
         return folderRepository.save(folder);
     }
 
+    // Rewrites the paths of the whole subtree in one statement. Moves of one user are serialized on their
+    // user row, so two concurrent moves cannot each pass the cycle check and make a loop together.
     @Transactional
-    public void delete(Long id, Long ownerId) {
+    public FolderSummary move(Long id, Long ownerId, Long parentId) {
+        userRepository.lockById(ownerId).orElseThrow();
+        Folder folder = folderRepository.findByIdAndOwnerId(id, ownerId).orElseThrow();
+        Folder parent = null;
+        if (parentId != null) {
+            parent = folderRepository.findByIdAndOwnerId(parentId, ownerId)
+                    .orElseThrow(() -> new IllegalArgumentException("Target folder not found"));
+            if (pathOf(parent).startsWith(pathOf(folder))) {
+                throw new IllegalArgumentException("A folder cannot be moved into itself");
+            }
+        }
+        String oldPath = pathOf(folder);
+        String newPath = childPath(parent, folder.getId());
+        int longest = folderRepository.findLongestSubtreePath(ownerId, oldPath);
+        if (longest - oldPath.length() + newPath.length() > Folder.MAX_PATH_LENGTH) {
+            throw new IllegalArgumentException("Folders would be nested too deeply");
+        }
+        folder.setParent(parent);
+        // Set directly as well, in case the stored path was missing and the rewrite below cannot match it
+        folder.setPath(newPath);
+        FolderSummary moved = FolderSummary.of(folder);
+        folderRepository.movePaths(ownerId, oldPath, newPath);
+        return moved;
+    }
+
+    // Root first, ending with the folder itself
+    @Transactional(readOnly = true)
+    public List<FolderSummary> breadcrumbs(Long id, Long ownerId) {
         Folder folder = folderRepository.findByIdAndOwnerId(id, ownerId).orElseThrow();
-        folderRepository.delete(folder);
+        List<Long> ids = Arrays.stream(pathOf(folder).split("/"))
+                .filter(part -> !part.isEmpty())
+                .map(Long::valueOf)
+                .toList();
+        Map<Long, Folder> ancestors = folderRepository.findByOwnerIdAndIdIn(ownerId, ids).stream()
+                .collect(Collectors.toMap(Folder::getId, ancestor -> ancestor));
+        return ids.stream().map(ancestors::get).filter(Objects::nonNull).map(FolderSummary::of).toList();
+    }
+
+    // The folder and everything below it, parents before children
+    @Transactional(readOnly = true)
+    public List<FolderSummary> subtree(Long id, Long ownerId) {
+        Folder folder = folderRepository.findByIdAndOwnerId(id, ownerId).orElseThrow();
+        return folderRepository.findByOwnerIdAndPathStartingWithOrderByPath(ownerId, pathOf(folder)).stream()
+                .map(FolderSummary::of)
+                .toList();
+    }
+
+    public FolderStats stats(Long id, Long ownerId) {
+        Folder folder = folderRepository.findByIdAndOwnerId(id, ownerId).orElseThrow();
+        return folderRepository.findSubtreeStats(ownerId, pathOf(folder));
     }
-}
 
+    private String childPath(Folder parent, Long id) {
+        String path = (parent != null ? pathOf(parent) : "/") + id + "/";
+        if (path.length() > Folder.MAX_PATH_LENGTH) {
+            throw new IllegalArgumentException("Folders are nested too deeply");
+        }
+        return path;
+    }
+
+    // A handful of set-based statements over the subtree instead of cascading through every entity in it.
+    // Stored bytes are queued and released by BlobReclaimer at its own pace.
+    @Transactional
+    public void delete(Long id, Long ownerId) {
+        userRepository.lockById(ownerId).orElseThrow();
+        Folder folder = folderRepository.findByIdAndOwnerId(id, ownerId).orElseThrow();
+        String path = pathOf(folder);
+        if (folder.getPath() == null) {
+            // The statements below find the folder itself by its path too
+            folder.setPath(path);
+            folderRepository.saveAndFlush(folder);
+        }
+        pendingBlobReleaseRepository.addFolderSubtree(ownerId, path, Instant.now());
+        shareLinkRepository.deleteInFolderSubtree(ownerId, path);
+        sessionFileRepository.deleteInFolderSubtree(ownerId, path);
+        fileItemRepository.deleteInFolderSubtree(ownerId, path);
+        folderRepository.detachSubtree(ownerId, path);
+        folderRepository.deleteSubtree(ownerId, path);
+    }
 
+    // A folder inserted by a replica that predates the path column has none until FolderPathBackfill runs
+    // again; its path is then worked out from the parent chain
+    private static String pathOf(Folder folder) {
+        if (folder.getPath() != null) {
+            return folder.getPath();
+        }
+        Deque<Long> ids = new ArrayDeque<>();
+        Folder ancestor = folder;
+        while (ancestor != null && ancestor.getPath() == null) {
+            if (ids.contains(ancestor.getId())) {
+                throw new IllegalStateException("Folder " + folder.getId() + " has no path and its parents form a loop");
+            }
+            ids.push(ancestor.getId());
+            ancestor = ancestor.getParent();
+        }
+        StringBuilder path = new StringBuilder(ancestor != null ? ancestor.getPath() : "/");
+        ids.forEach(id -> path.append(id).append('/'));
+        return path.toString();
+    }
+}
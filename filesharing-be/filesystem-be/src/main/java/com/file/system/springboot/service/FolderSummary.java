@@ -0,0 +1,13 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.Folder;
+
+import java.time.Instant;
+
+public record FolderSummary(Long id, String name, Long parentId, Instant createdAt) {
+
+    static FolderSummary of(Folder folder) {
+        return new FolderSummary(folder.getId(), folder.getName(),
+                folder.getParent() != null ? folder.getParent().getId() : null, folder.getCreatedAt());
+    }
+}
@@ -0,0 +1,100 @@
+package com.file.system.springboot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Content of small, frequently downloaded blobs held in direct (off-heap) buffers. A file is only read into
+// memory once it has been asked for admit-after times within the admission window; until then downloads
+// go through sendfile or transferTo and read just the requested ranges. Caffeine's W-TinyLFU eviction then
+// keeps one-off downloads from pushing out files a whole session keeps fetching.
+//
+// The buffers held are bounded by max-bytes through the weigher. An evicted buffer is freed by its own Cleaner
+// once the last download writing from it lets go, so max-bytes should leave room under -XX:MaxDirectMemorySize.
+@Component
+public class HotFileCache {
+    private static final int MAX_TRACKED_KEYS = 100_000;
+
+    @FunctionalInterface
+    public interface Loader {
+        ByteBuffer load() throws IOException;
+    }
+
+    private final boolean enabled;
+    private final long maxEntryBytes;
+    private final int admitAfter;
+    private final Cache<String, ByteBuffer> cache;
+    private final Cache<String, AtomicInteger> requests;
+
+    public HotFileCache(@Value("${app.storage.hot-cache.enabled:false}") boolean enabled,
+                        @Value("${app.storage.hot-cache.max-bytes:256MB}") DataSize maxBytes,
+                        @Value("${app.storage.hot-cache.max-entry-bytes:8MB}") DataSize maxEntryBytes,
+                        @Value("${app.storage.hot-cache.admit-after:3}") int admitAfter,
+                        @Value("${app.storage.hot-cache.admission-window:10m}") Duration admissionWindow,
+                        MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxEntryBytes = maxEntryBytes.toBytes();
+        this.admitAfter = Math.max(1, admitAfter);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes.toBytes())
+                .weigher((String key, ByteBuffer buffer) -> buffer.capacity())
+                // On the thread that evicted it, so the cache is back under max-bytes before the next load
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        this.requests = Caffeine.newBuilder()
+                .maximumSize(MAX_TRACKED_KEYS)
+                .expireAfterWrite(admissionWindow)
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "storage.hot-files");
+        Gauge.builder("storage.hot-files.hit.ratio", cache, c -> c.stats().hitRate())
+                .register(meterRegistry);
+        Gauge.builder("storage.hot-files.bytes", cache,
+                        c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    // Returns null when the file is not cached (yet); concurrent loads of the same key share one read
+    public ByteBuffer get(String storageKey, long length, Loader loader) throws IOException {
+        if (!enabled || length > maxEntryBytes) {
+            return null;
+        }
+        ByteBuffer buffer = cache.getIfPresent(storageKey);
+        if (buffer == null) {
+            if (requests.get(storageKey, key -> new AtomicInteger()).incrementAndGet() < admitAfter) {
+                return null;
+            }
+            try {
+                buffer = cache.get(storageKey, key -> {
+                    try {
+                        return loader.load();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            requests.invalidate(storageKey);
+        }
+        return buffer.asReadOnlyBuffer();
+    }
+
+    public void invalidate(String storageKey) {
+        cache.invalidate(storageKey);
+        requests.invalidate(storageKey);
+    }
+}
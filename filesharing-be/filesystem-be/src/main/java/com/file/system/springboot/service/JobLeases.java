@@ -0,0 +1,63 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.JobLease;
+import com.file.system.springboot.repository.JobLeaseRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+// Lets one replica at a time run a scheduled job. The lease row is locked only while it is taken or given
+// back, never for the length of the job itself.
+@Component
+public class JobLeases {
+    private final JobLeaseRepository jobLeaseRepository;
+    private final TransactionTemplate newTransaction;
+    private final String holder = UUID.randomUUID().toString();
+
+    public JobLeases(JobLeaseRepository jobLeaseRepository, PlatformTransactionManager transactionManager) {
+        this.jobLeaseRepository = jobLeaseRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // True when this replica now holds the lease; false while another one does
+    public boolean acquire(String name, Duration lease) {
+        try {
+            return Boolean.TRUE.equals(newTransaction.execute(status -> take(name, lease)));
+        } catch (DataIntegrityViolationException e) {
+            // Another replica created the row at the same time; it exists now
+            return Boolean.TRUE.equals(newTransaction.execute(status -> take(name, lease)));
+        }
+    }
+
+    public void release(String name) {
+        newTransaction.executeWithoutResult(status -> jobLeaseRepository.lockByName(name)
+                .filter(lease -> holder.equals(lease.getHolder()))
+                .ifPresent(lease -> {
+                    lease.setLeasedUntil(Instant.now());
+                    jobLeaseRepository.save(lease);
+                }));
+    }
+
+    private boolean take(String name, Duration lease) {
+        Instant now = Instant.now();
+        JobLease row = jobLeaseRepository.lockByName(name).orElseGet(() -> {
+            JobLease created = new JobLease();
+            created.setName(name);
+            return created;
+        });
+        if (row.getLeasedUntil().isAfter(now)) {
+            return false;
+        }
+        row.setHolder(holder);
+        row.setLeasedUntil(now.plus(lease));
+        jobLeaseRepository.saveAndFlush(row);
+        return true;
+    }
+}
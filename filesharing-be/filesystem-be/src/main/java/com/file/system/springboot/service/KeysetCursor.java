@@ -0,0 +1,89 @@
+package com.file.system.springboot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Opaque page token holding the sort key and id of the last row a client has seen
+final class KeysetCursor {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private KeysetCursor() {
+    }
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    // Sort by one whitelisted property with the id as tiebreaker, starting after the cursor
+    static KeysetScrollPosition position(String cursor, String sort, Map<String, Class<?>> sortKeys, int limit) {
+        Class<?> sortType = sortKeys.get(sort);
+        if (sortType == null) {
+            throw new IllegalArgumentException("Sort must be one of " + String.join(", ", sortKeys.keySet()));
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        Map<String, Class<?>> keyTypes = new LinkedHashMap<>();
+        keyTypes.put(sort, sortType);
+        keyTypes.put("id", Long.class);
+        return decode(cursor, keyTypes);
+    }
+
+    static Sort sort(String sort, String order) {
+        Sort.Direction direction = Sort.Direction.fromOptionalString(order)
+                .orElseThrow(() -> new IllegalArgumentException("Order must be asc or desc"));
+        return Sort.by(direction, sort, "id");
+    }
+
+    static String encode(ScrollPosition position) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        ((KeysetScrollPosition) position).getKeys()
+                .forEach((key, value) -> keys.put(key, value instanceof Instant instant ? instant.toString() : value));
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(keys));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The key types restore what JSON loses, and a cursor from a different sort is rejected
+    static KeysetScrollPosition decode(String cursor, Map<String, Class<?>> keyTypes) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        Map<String, Object> raw;
+        try {
+            raw = MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), new TypeReference<>() {});
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (raw == null || !raw.keySet().equals(keyTypes.keySet())) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort");
+        }
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keyTypes.forEach((key, type) -> keys.put(key, convert(raw.get(key), type)));
+        return ScrollPosition.forward(keys);
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        try {
+            if (type == Long.class) {
+                return ((Number) value).longValue();
+            }
+            if (type == Instant.class) {
+                return Instant.parse((String) value);
+            }
+            return type.cast(value);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.file.system.springboot.service;
+
+import org.springframework.data.domain.Window;
+
+import java.util.List;
+import java.util.function.Function;
+
+// nextCursor is null on the last page
+public record ListingPage<T>(List<T> items, String nextCursor) {
+
+    static <E, T> ListingPage<T> of(Window<E> window, Function<E, T> mapper) {
+        String nextCursor = window.hasNext() && !window.isEmpty()
+                ? KeysetCursor.encode(window.positionAt(window.size() - 1)) : null;
+        return new ListingPage<>(window.getContent().stream().map(mapper).toList(), nextCursor);
+    }
+}
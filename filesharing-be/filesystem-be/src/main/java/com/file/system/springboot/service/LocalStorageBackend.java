@@ -0,0 +1,345 @@
+package com.file.system.springboot.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// Files under a directory on a local or mounted volume
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalStorageBackend implements StorageBackend {
+    // Names of the flat root sorted in memory at a time while listing
+    static final int RUN_LENGTH = 10_000;
+
+    private final Path storageRoot;
+    private final Path tempRoot;
+    private final boolean sharded;
+
+    public LocalStorageBackend(@Value("${app.storage.location}") String storageLocation,
+                               @Value("${app.storage.sharded:false}") boolean sharded) throws IOException {
+        this.storageRoot = Paths.get(storageLocation).toAbsolutePath().normalize();
+        this.tempRoot = storageRoot.resolve(".tmp");
+        this.sharded = sharded;
+        Files.createDirectories(this.storageRoot);
+        Files.createDirectories(this.tempRoot);
+    }
+
+    // Staged on the storage volume itself, so put is a rename
+    @Override
+    public Path createTempFile() throws IOException {
+        return Files.createTempFile(tempRoot, "upload-", ".part");
+    }
+
+    @Override
+    public void put(String storageKey, Path source) throws IOException {
+        Path target = resolve(storageKey);
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public boolean exists(String storageKey) {
+        return Files.exists(resolve(storageKey));
+    }
+
+    @Override
+    public long size(String storageKey) throws IOException {
+        try (FileChannel channel = open(storageKey, StandardOpenOption.READ)) {
+            return channel.size();
+        }
+    }
+
+    @Override
+    public InputStream open(String storageKey) throws IOException {
+        return Channels.newInputStream(open(storageKey, StandardOpenOption.READ));
+    }
+
+    @Override
+    public void transferTo(String storageKey, long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = open(storageKey, StandardOpenOption.READ)) {
+            long end = position + count;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    throw new EOFException("Unexpected end of " + storageKey + " at offset " + position);
+                }
+                position += sent;
+            }
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String storageKey) {
+        return Optional.of(resolve(storageKey));
+    }
+
+    // Clears both layouts so a file caught mid-migration cannot survive its deletion
+    @Override
+    public void delete(String storageKey) throws IOException {
+        Path shardedPath = sharded ? shardedPath(storageKey) : null;
+        if (shardedPath != null) {
+            Files.deleteIfExists(shardedPath);
+        }
+        Files.deleteIfExists(flatPath(storageKey));
+    }
+
+    // Shard directories are walked in name order and each one is sorted on its own, so only a single
+    // directory listing is in memory at a time. The flat root can hold the whole store (sharding off, or
+    // early in the layout migration), so it is read in runs of RUN_LENGTH names that are sorted, spilled
+    // to the temp directory and merged.
+    @Override
+    public Stream<String> list() throws IOException {
+        Stream<String> flat = flatKeys();
+        Stream<String> shardedKeys;
+        try {
+            shardedKeys = sortedNames(storageRoot, this::isShardDirectory).stream()
+                    .flatMap(first -> uncheckedSortedNames(storageRoot.resolve(first), this::isShardDirectory).stream()
+                            .map(second -> storageRoot.resolve(first).resolve(second)))
+                    .flatMap(directory -> uncheckedSortedNames(directory, Files::isRegularFile).stream());
+        } catch (IOException | RuntimeException e) {
+            flat.close();
+            throw e;
+        }
+        return SortedKeys.stream(SortedKeys.union(flat.iterator(), shardedKeys.iterator()))
+                .onClose(shardedKeys::close)
+                .onClose(flat::close);
+    }
+
+    private Stream<String> flatKeys() throws IOException {
+        List<Path> runs = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(storageRoot, Files::isRegularFile)) {
+            for (Path entry : entries) {
+                names.add(entry.getFileName().toString());
+                if (names.size() == RUN_LENGTH) {
+                    runs.add(writeRun(names));
+                    names.clear();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteRuns(runs);
+            throw e;
+        }
+        Collections.sort(names);
+        if (runs.isEmpty()) {
+            return names.stream();
+        }
+
+        List<DataInputStream> readers = new ArrayList<>();
+        List<Iterator<String>> sources = new ArrayList<>();
+        sources.add(names.iterator());
+        Runnable cleanUp = () -> {
+            readers.forEach(LocalStorageBackend::closeQuietly);
+            deleteRuns(runs);
+        };
+        try {
+            for (Path run : runs) {
+                DataInputStream reader = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+                readers.add(reader);
+                sources.add(readRun(reader));
+            }
+        } catch (IOException | RuntimeException e) {
+            cleanUp.run();
+            throw e;
+        }
+        return SortedKeys.stream(SortedKeys.union(sources)).onClose(cleanUp);
+    }
+
+    private Path writeRun(List<String> names) throws IOException {
+        Collections.sort(names);
+        Path run = Files.createTempFile(tempRoot, "list-", ".run");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(run);
+            throw e;
+        }
+        return run;
+    }
+
+    // Every spilled run holds exactly RUN_LENGTH names
+    private static Iterator<String> readRun(DataInputStream in) {
+        return new Iterator<>() {
+            private int remaining = RUN_LENGTH;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public String next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                try {
+                    return in.readUTF();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    private static void deleteRuns(List<Path> runs) {
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                // Left in the temp directory, which is not listed
+            }
+        }
+    }
+
+    private static void closeQuietly(DataInputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Only read from
+        }
+    }
+
+    private boolean isShardDirectory(Path path) {
+        String name = path.getFileName().toString();
+        return name.length() == 2 && isLowerHex(name, 2) && Files.isDirectory(path);
+    }
+
+    private static List<String> sortedNames(Path directory, DirectoryStream.Filter<Path> filter) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, filter)) {
+            entries.forEach(entry -> names.add(entry.getFileName().toString()));
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static List<String> uncheckedSortedNames(Path directory, DirectoryStream.Filter<Path> filter) {
+        try {
+            return sortedNames(directory, filter);
+        } catch (NoSuchFileException e) {
+            // Removed while walking
+            return List.of();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The final file is allocated up front and parts are written into it at their offsets
+    @Override
+    public String beginUpload(String storageKey) throws IOException {
+        Path target = resolve(storageKey);
+        Files.createDirectories(target.getParent());
+        Files.createFile(target);
+        return null;
+    }
+
+    // Positional write, so several chunks of the same file can be written concurrently
+    @Override
+    public void writePart(String storageKey, String uploadId, int index, long position, InputStream in, long count) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(in);
+        try (FileChannel channel = open(storageKey, StandardOpenOption.WRITE)) {
+            long written = 0;
+            while (written < count) {
+                long n = channel.transferFrom(source, position + written, count - written);
+                if (n <= 0) {
+                    throw new EOFException("Expected " + count + " bytes but got " + written);
+                }
+                written += n;
+            }
+        }
+    }
+
+    @Override
+    public void completeUpload(String storageKey, String uploadId) {
+    }
+
+    @Override
+    public void abortUpload(String storageKey, String uploadId) throws IOException {
+        delete(storageKey);
+    }
+
+    // Prefers the sharded location but keeps finding files the migrator has not moved yet
+    Path resolve(String storageKey) {
+        Path flat = flatPath(storageKey);
+        Path shardedPath = sharded ? shardedPath(storageKey) : null;
+        if (shardedPath == null || Files.exists(shardedPath) || !Files.exists(flat)) {
+            return shardedPath != null ? shardedPath : flat;
+        }
+        return flat;
+    }
+
+    Path flatPath(String storageKey) {
+        return storageRoot.resolve(storageKey).normalize();
+    }
+
+    // Two levels of directories named after the first four hex characters of the key, e.g. ab/cd/abcd1234...
+    // Every key this service generates starts with a random UUID, so its hex spreads keys evenly; anything
+    // else stays flat
+    Path shardedPath(String storageKey) {
+        if (storageKey.length() < 5 || !isLowerHex(storageKey, 4)) {
+            return null;
+        }
+        return storageRoot.resolve(storageKey.substring(0, 2))
+                .resolve(storageKey.substring(2, 4))
+                .resolve(storageKey)
+                .normalize();
+    }
+
+    Path getStorageRoot() {
+        return storageRoot;
+    }
+
+    boolean isSharded() {
+        return sharded;
+    }
+
+    private static boolean isLowerHex(String value, int length) {
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The layout migrator may move the file between resolve and open; look it up once more in that case
+    private FileChannel open(String storageKey, OpenOption... options) throws IOException {
+        try {
+            return FileChannel.open(resolve(storageKey), options);
+        } catch (NoSuchFileException e) {
+            return FileChannel.open(resolve(storageKey), options);
+        }
+    }
+}
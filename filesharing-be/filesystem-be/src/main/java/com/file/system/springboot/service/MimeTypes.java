@@ -0,0 +1,47 @@
+package com.file.system.springboot.service;
+
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+final class MimeTypes {
+    private MimeTypes() {
+    }
+
+    // A specific declared type wins; otherwise the leading bytes, then the file name extension
+    static String detect(byte[] head, String fileName, String declared) {
+        if (declared != null && !declared.isBlank()
+                && !declared.startsWith(MediaType.APPLICATION_OCTET_STREAM_VALUE)) {
+            return declared;
+        }
+        String sniffed = sniff(head);
+        if (sniffed == null && fileName != null) {
+            sniffed = URLConnection.guessContentTypeFromName(fileName);
+        }
+        return sniffed != null ? sniffed : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+
+    private static String sniff(byte[] head) {
+        if (startsWith(head, 0, "%PDF-")) return MediaType.APPLICATION_PDF_VALUE;
+        if (startsWith(head, 0, "PK\u0003\u0004")) return "application/zip";
+        if (startsWith(head, 0, "\u001f\u008b")) return "application/gzip";
+        if (startsWith(head, 4, "ftyp")) return "video/mp4";
+        if (startsWith(head, 0, "RIFF") && startsWith(head, 8, "WEBP")) return "image/webp";
+        if (startsWith(head, 0, "ID3")) return "audio/mpeg";
+        try {
+            return URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(head));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean startsWith(byte[] head, int offset, String magic) {
+        byte[] bytes = magic.getBytes(StandardCharsets.ISO_8859_1);
+        return head.length >= offset + bytes.length
+                && Arrays.equals(head, offset, offset + bytes.length, bytes, 0, bytes.length);
+    }
+}
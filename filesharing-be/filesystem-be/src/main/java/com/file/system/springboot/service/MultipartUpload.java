@@ -0,0 +1,4 @@
+package com.file.system.springboot.service;
+
+public record MultipartUpload(String storageKey, String uploadId) {
+}
@@ -0,0 +1,157 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.PasshareCodeSequence;
+import com.file.system.springboot.repository.PasshareCodeSequenceRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// Hands out Passhare session codes that are unique without asking the database whether they are taken.
+// Every code comes from a distinct value of a shared counter, put through a keyed permutation of the
+// 36^8 possible codes: distinct values always give distinct codes, while without the key consecutive
+// codes look unrelated, so one code says nothing about the others. Replicas reserve counter values in
+// blocks, which makes the database row a once-per-block affair.
+//
+// The permutation is an 8-round Feistel network on 42 bits (HMAC-SHA256 as round function), narrowed to
+// the code space by cycle walking: results outside it are permuted again until one falls inside.
+@Component
+public class PasshareCodeAllocator {
+    static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    static final int CODE_LENGTH = 8;
+    static final long CODE_SPACE = pow(ALPHABET.length(), CODE_LENGTH);
+    private static final String SEQUENCE_NAME = "session-code";
+    private static final int HALF_BITS = 21;
+    private static final long HALF_MASK = (1L << HALF_BITS) - 1;
+    private static final int ROUNDS = 8;
+
+    private final PasshareCodeSequenceRepository sequenceRepository;
+    private final TransactionTemplate newTransaction;
+    private final int blockSize;
+    // Guarded by this
+    private long next;
+    private long blockEnd;
+    private volatile ThreadLocal<Mac> roundFunction;
+
+    public PasshareCodeAllocator(PasshareCodeSequenceRepository sequenceRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.passhare.code.block-size:1000}") int blockSize) {
+        this.sequenceRepository = sequenceRepository;
+        // Not part of the session being created: the row lock is held only for the reservation
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    public String next() {
+        long value;
+        synchronized (this) {
+            if (next == blockEnd) {
+                reserveBlock();
+            }
+            value = next++;
+        }
+        return encode(permute(value));
+    }
+
+    private void reserveBlock() {
+        Long end;
+        try {
+            end = newTransaction.execute(status -> reserve());
+        } catch (DataIntegrityViolationException e) {
+            // Another replica created the sequence at the same time; it exists now
+            end = newTransaction.execute(status -> reserve());
+        }
+        blockEnd = end;
+        next = blockEnd - blockSize;
+    }
+
+    // Takes the next block of counter values and returns where it ends
+    private long reserve() {
+        PasshareCodeSequence sequence = sequenceRepository.lockByName(SEQUENCE_NAME).orElseGet(() -> {
+            byte[] key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            PasshareCodeSequence created = new PasshareCodeSequence();
+            created.setName(SEQUENCE_NAME);
+            created.setPermutationKey(Base64.getEncoder().encodeToString(key));
+            return created;
+        });
+        long end = sequence.getNextValue() + blockSize;
+        if (end > CODE_SPACE) {
+            throw new IllegalStateException("Passhare session codes are used up");
+        }
+        sequence.setNextValue(end);
+        // Flushed first, so a key that lost the race to create the row is never used
+        sequenceRepository.saveAndFlush(sequence);
+        if (roundFunction == null) {
+            roundFunction = roundFunction(Base64.getDecoder().decode(sequence.getPermutationKey()));
+        }
+        return end;
+    }
+
+    long permute(long value) {
+        long x = value;
+        do {
+            x = feistel(x);
+        } while (x >= CODE_SPACE);
+        return x;
+    }
+
+    private long feistel(long x) {
+        Mac mac = roundFunction.get();
+        long left = x >>> HALF_BITS;
+        long right = x & HALF_MASK;
+        byte[] input = new byte[5];
+        for (int round = 0; round < ROUNDS; round++) {
+            input[0] = (byte) round;
+            input[1] = (byte) (right >>> 24);
+            input[2] = (byte) (right >>> 16);
+            input[3] = (byte) (right >>> 8);
+            input[4] = (byte) right;
+            byte[] digest = mac.doFinal(input);
+            long f = ((digest[0] & 0xffL) << 16 | (digest[1] & 0xffL) << 8 | (digest[2] & 0xffL)) & HALF_MASK;
+            long mixed = left ^ f;
+            left = right;
+            right = mixed;
+        }
+        return left << HALF_BITS | right;
+    }
+
+    static String encode(long value) {
+        char[] code = new char[CODE_LENGTH];
+        for (int i = CODE_LENGTH - 1; i >= 0; i--) {
+            code[i] = ALPHABET.charAt((int) (value % ALPHABET.length()));
+            value /= ALPHABET.length();
+        }
+        return new String(code);
+    }
+
+    private static ThreadLocal<Mac> roundFunction(byte[] key) {
+        SecretKeySpec spec = new SecretKeySpec(key, "HmacSHA256");
+        return ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(spec);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static long pow(long base, int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= base;
+        }
+        return result;
+    }
+}
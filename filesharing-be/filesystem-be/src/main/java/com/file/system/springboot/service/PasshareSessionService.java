@@ -2,13 +2,18 @@ package com.file.system.springboot.service;
 
 import com.file.system.springboot.model.*;
 import com.file.system.springboot.repository.*;
+import com.file.system.springboot.service.ActiveSessionRegistry.ActiveSession;
+import com.file.system.springboot.service.ActiveSessionRegistry.SharedFile;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
 import java.util.stream.Collectors;
 
 @Service
@@ -18,26 +23,40 @@ public class PasshareSessionService {
     private final PasshareSessionFileRepository sessionFileRepository;
     private final UserRepository userRepository;
     private final FileItemRepository fileItemRepository;
-    private final Random random = new Random();
+    private final DownloadCounter downloadCounter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ActiveSessionRegistry sessionRegistry;
+    private final SessionChangeFeed changeFeed;
+    private final PasshareCodeAllocator codeAllocator;
 
     public PasshareSessionService(
             PasshareSessionRepository sessionRepository,
             PasshareSessionParticipantRepository participantRepository,
             PasshareSessionFileRepository sessionFileRepository,
             UserRepository userRepository,
-            FileItemRepository fileItemRepository) {
+            FileItemRepository fileItemRepository,
+            DownloadCounter downloadCounter,
+            ApplicationEventPublisher eventPublisher,
+            ActiveSessionRegistry sessionRegistry,
+            SessionChangeFeed changeFeed,
+            PasshareCodeAllocator codeAllocator) {
         this.sessionRepository = sessionRepository;
         this.participantRepository = participantRepository;
         this.sessionFileRepository = sessionFileRepository;
         this.userRepository = userRepository;
         this.fileItemRepository = fileItemRepository;
+        this.downloadCounter = downloadCounter;
+        this.eventPublisher = eventPublisher;
+        this.sessionRegistry = sessionRegistry;
+        this.changeFeed = changeFeed;
+        this.codeAllocator = codeAllocator;
     }
 
     @Transactional
     public PasshareSession createSession(Long creatorId) {
         PasshareSession session = new PasshareSession();
         session.setCreatorId(creatorId);
-        session.setCode(generateUniqueCode());
+        session.setCode(codeAllocator.next());
         session.setCreatedAt(Instant.now());
         session.setExpiresAt(Instant.now().plusSeconds(3600)); // 1 hour expiry
         session.setActive(true);
@@ -52,6 +71,8 @@ public class PasshareSessionService {
         creatorParticipant.setJoinedAt(Instant.now());
         participantRepository.save(creatorParticipant);
 
+        // Lets every replica's SessionExpiryScheduler know when to end it
+        publish(session.getId(), SessionEvent.SESSION_CREATED, Map.of("expiresAt", session.getExpiresAt()));
         return session;
     }
 
@@ -60,9 +81,8 @@ public class PasshareSessionService {
         PasshareSession session = sessionRepository.findByCodeAndActiveTrue(code)
                 .orElseThrow(() -> new IllegalArgumentException("Session not found or inactive"));
 
+        // Not deactivated yet; SessionExpiryScheduler is about to
         if (session.getExpiresAt() != null && session.getExpiresAt().isBefore(Instant.now())) {
-            session.setActive(false);
-            sessionRepository.save(session);
             throw new IllegalArgumentException("Session has expired");
         }
 
@@ -72,7 +92,11 @@ public class PasshareSessionService {
             participant.setSession(session);
             participant.setUserId(userId);
             participant.setJoinedAt(Instant.now());
-            participantRepository.save(participant);
+            participant = participantRepository.save(participant);
+            publish(session.getId(), SessionEvent.PARTICIPANT_JOINED, Map.of(
+                    "id", participant.getId(),
+                    "userId", userId,
+                    "joinedAt", participant.getJoinedAt()));
         }
 
         return session;
@@ -80,15 +104,15 @@ public class PasshareSessionService {
 
     @Transactional
     public PasshareSessionFile shareFile(Long sessionId, Long fileId, Long userId) {
-        PasshareSession session = sessionRepository.findById(sessionId)
+        ActiveSession session = sessionRegistry.find(sessionId)
                 .orElseThrow(() -> new IllegalArgumentException("Session not found"));
 
-        if (!session.isActive()) {
+        if (!session.isOpen()) {
             throw new IllegalArgumentException("Session is not active");
         }
 
         // Verify user is a participant
-        if (!participantRepository.existsBySessionIdAndUserId(sessionId, userId)) {
+        if (!isParticipant(session, userId)) {
             throw new IllegalArgumentException("User is not a participant in this session");
         }
 
@@ -96,84 +120,78 @@ public class PasshareSessionService {
                 .orElseThrow(() -> new IllegalArgumentException("File not found"));
 
         // Check if file is already shared in this session
-        List<PasshareSessionFile> existingFiles = sessionFileRepository.findBySessionId(sessionId);
-        Optional<PasshareSessionFile> existing = existingFiles.stream()
-                .filter(sf -> sf.getFileItem().getId().equals(fileId))
-                .findFirst();
+        Optional<PasshareSessionFile> existing = session.files().entrySet().stream()
+                .filter(e -> e.getValue().fileId().equals(fileId))
+                .findFirst()
+                .flatMap(e -> sessionFileRepository.findById(e.getKey()));
 
         if (existing.isPresent()) {
             return existing.get();
         }
 
         PasshareSessionFile sessionFile = new PasshareSessionFile();
-        sessionFile.setSession(session);
+        sessionFile.setSession(sessionRepository.getReferenceById(sessionId));
         sessionFile.setFileItem(fileItem);
         sessionFile.setSharedByUserId(userId);
         sessionFile.setSharedAt(Instant.now());
 
-        return sessionFileRepository.save(sessionFile);
+        sessionFile = sessionFileRepository.save(sessionFile);
+        publish(sessionId, SessionEvent.FILE_SHARED, Map.of(
+                "id", sessionFile.getId(),
+                "fileId", fileId,
+                "fileName", fileItem.getName(),
+                "sharedByUserId", userId,
+                "sharedAt", sessionFile.getSharedAt()));
+        return sessionFile;
     }
 
-    public Optional<PasshareSession> getSession(Long sessionId, Long userId) {
-        Optional<PasshareSession> sessionOpt = sessionRepository.findById(sessionId);
-        if (sessionOpt.isEmpty()) {
-            return Optional.empty();
-        }
-
-        PasshareSession session = sessionOpt.get();
+    public Optional<ActiveSession> getSession(Long sessionId, Long userId) {
         // Verify user is a participant
-        if (!participantRepository.existsBySessionIdAndUserId(sessionId, userId)) {
-            return Optional.empty();
-        }
-
-        return sessionOpt;
+        return sessionRegistry.find(sessionId).filter(session -> isParticipant(session, userId));
     }
 
     public List<PasshareSessionFile> getSessionFiles(Long sessionId, Long userId) {
-        // Verify user is a participant
-        if (!participantRepository.existsBySessionIdAndUserId(sessionId, userId)) {
-            throw new IllegalArgumentException("User is not a participant in this session");
+        if (!requireParticipant(sessionId, userId).isOpen()) {
+            throw new IllegalArgumentException("Session is not active");
         }
-
         return sessionFileRepository.findBySessionId(sessionId);
     }
 
     public List<PasshareSessionParticipant> getSessionParticipants(Long sessionId, Long userId) {
-        // Verify user is a participant
-        if (!participantRepository.existsBySessionIdAndUserId(sessionId, userId)) {
-            throw new IllegalArgumentException("User is not a participant in this session");
-        }
-
+        requireParticipant(sessionId, userId);
         return participantRepository.findBySessionId(sessionId);
     }
 
     @Transactional
     public void leaveSession(Long sessionId, Long userId) {
-        PasshareSession session = sessionRepository.findById(sessionId)
+        ActiveSession session = sessionRegistry.find(sessionId)
                 .orElseThrow(() -> new IllegalArgumentException("Session not found"));
 
         // Don't allow creator to leave (they can end the session instead)
-        if (session.getCreatorId().equals(userId)) {
+        if (session.creatorId().equals(userId)) {
             throw new IllegalArgumentException("Creator cannot leave session. End the session instead.");
         }
 
-        List<PasshareSessionParticipant> participants = participantRepository.findBySessionId(sessionId);
-        participants.stream()
-                .filter(p -> p.getUserId().equals(userId))
-                .findFirst()
-                .ifPresent(participantRepository::delete);
+        if (participantRepository.deleteBySessionIdAndUserId(sessionId, userId) > 0) {
+            publish(sessionId, SessionEvent.PARTICIPANT_LEFT, Map.of("userId", userId));
+        }
     }
 
+    // Loads the shared file together with its FileItem, ready to be streamed
     public PasshareSessionFile getSessionFile(Long sessionId, Long sessionFileId, Long userId) {
-        PasshareSession session = sessionRepository.findById(sessionId)
+        ActiveSession session = sessionRegistry.find(sessionId)
                 .orElseThrow(() -> new IllegalArgumentException("Session not found"));
 
         // Verify user is a participant
-        if (!participantRepository.existsBySessionIdAndUserId(sessionId, userId)) {
+        if (!isParticipant(session, userId)) {
             throw new IllegalArgumentException("User is not a participant in this session");
         }
 
-        PasshareSessionFile sessionFile = sessionFileRepository.findById(sessionFileId)
+        if (!session.isOpen()) {
+            throw new IllegalArgumentException("Session is not active");
+        }
+
+        PasshareSessionFile sessionFile = sessionFileRepository.findWithFileItemById(sessionFileId)
                 .orElseThrow(() -> new IllegalArgumentException("Shared file not found"));
 
         if (!sessionFile.getSession().getId().equals(sessionId)) {
@@ -183,40 +201,40 @@ public class PasshareSessionService {
         return sessionFile;
     }
 
-    @Transactional
+    // The caller has already checked access through getSessionFile; the count reaches the row on the next flush
     public void incrementSessionFileDownloadCount(Long sessionId, Long sessionFileId, Long userId) {
-        PasshareSessionFile sessionFile = getSessionFile(sessionId, sessionFileId, userId);
-        sessionFile.setDownloadCount(sessionFile.getDownloadCount() + 1);
-        sessionFileRepository.save(sessionFile);
+        downloadCounter.recordSessionFileDownload(sessionFileId);
     }
 
     @Transactional
     public void removeSharedFile(Long sessionId, Long sessionFileId, Long userId) {
-        PasshareSession session = sessionRepository.findById(sessionId)
+        ActiveSession session = sessionRegistry.find(sessionId)
                 .orElseThrow(() -> new IllegalArgumentException("Session not found"));
 
-        if (!session.isActive()) {
+        if (!session.isOpen()) {
             throw new IllegalArgumentException("Session is not active");
         }
 
         // Verify user is a participant
-        if (!participantRepository.existsBySessionIdAndUserId(sessionId, userId)) {
+        if (!isParticipant(session, userId)) {
             throw new IllegalArgumentException("User is not a participant in this session");
         }
 
-        PasshareSessionFile sessionFile = sessionFileRepository.findById(sessionFileId)
+        // Not known here yet if it was shared through another replica a moment ago
+        SharedFile sharedFile = Optional.ofNullable(session.files().get(sessionFileId))
+                .or(() -> sessionFileRepository.findById(sessionFileId)
+                        .filter(f -> f.getSession().getId().equals(sessionId))
+                        .map(f -> new SharedFile(f.getFileItem().getId(), f.getSharedByUserId())))
                 .orElseThrow(() -> new IllegalArgumentException("Shared file not found"));
 
-        if (!sessionFile.getSession().getId().equals(sessionId)) {
-            throw new IllegalArgumentException("File does not belong to this session");
-        }
-
         // Allow removal if user shared the file OR user is the session creator
-        if (!sessionFile.getSharedByUserId().equals(userId) && !session.getCreatorId().equals(userId)) {
+        if (!sharedFile.sharedByUserId().equals(userId) && !session.creatorId().equals(userId)) {
             throw new IllegalArgumentException("Only the person who shared the file or the session creator can remove it");
         }
 
-        sessionFileRepository.delete(sessionFile);
+        if (sessionFileRepository.deleteFromSession(sessionId, sessionFileId) > 0) {
+            publish(sessionId, SessionEvent.FILE_REMOVED, Map.of("id", sessionFileId));
+        }
     }
 
     @Transactional
@@ -230,24 +248,61 @@ public class PasshareSessionService {
 
         session.setActive(false);
         sessionRepository.save(session);
+        publish(sessionId, SessionEvent.SESSION_ENDED, Map.of());
     }
 
-    private String generateUniqueCode() {
-        String code;
-        do {
-            code = generateCode();
-        } while (sessionRepository.findByCode(code).isPresent());
-        return code;
+    // Deactivates those of the given sessions that have run out, telling their participants
+    @Transactional
+    public List<Long> expireSessions(Collection<Long> sessionIds) {
+        List<Long> expired = sessionRepository.lockExpired(sessionIds, Instant.now());
+        if (!expired.isEmpty()) {
+            sessionRepository.deactivate(expired);
+            expired.forEach(id -> publish(id, SessionEvent.SESSION_ENDED, Map.of()));
+        }
+        return expired;
     }
 
-    private String generateCode() {
-        // Generate 8-character alphanumeric code
-        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-        StringBuilder code = new StringBuilder();
-        for (int i = 0; i < 8; i++) {
-            code.append(chars.charAt(random.nextInt(chars.length())));
+    // Removes up to batchSize sessions that ended before the cutoff, with their participants and files
+    @Transactional
+    public int purgeEndedSessions(Instant cutoff, int batchSize) {
+        List<Long> ended = sessionRepository.findEndedBefore(cutoff, Limit.of(batchSize));
+        if (!ended.isEmpty()) {
+            sessionFileRepository.deleteBySessionIds(ended);
+            participantRepository.deleteBySessionIds(ended);
+            sessionRepository.deleteAllByIdIn(ended);
         }
-        return code.toString();
+        return ended.size();
+    }
+
+    private ActiveSession requireParticipant(Long sessionId, Long userId) {
+        return getSession(sessionId, userId)
+                .orElseThrow(() -> new IllegalArgumentException("User is not a participant in this session"));
+    }
+
+    // Answered from memory; only a miss is confirmed against the database, since the user may have
+    // joined through another replica whose change has not arrived here yet. A leave that commits between
+    // that check and adding the user back is applied first and then undone, so the row is checked again
+    // afterwards: still there, and its leave will follow; gone, and the user is taken out again. Taking
+    // out someone who rejoined in between only costs them another lookup.
+    private boolean isParticipant(ActiveSession session, Long userId) {
+        if (session.hasParticipant(userId)) {
+            return true;
+        }
+        if (!participantRepository.existsBySessionIdAndUserId(session.id(), userId)) {
+            return false;
+        }
+        sessionRegistry.addParticipant(session.id(), userId);
+        if (participantRepository.existsBySessionIdAndUserId(session.id(), userId)) {
+            return true;
+        }
+        sessionRegistry.removeParticipant(session.id(), userId);
+        return false;
     }
-}
 
+    // Recorded for the other replicas within the transaction; reaches this one's listeners after commit
+    private void publish(Long sessionId, String type, Map<String, Object> data) {
+        SessionEvent event = new SessionEvent(sessionId, type, data);
+        changeFeed.record(event);
+        eventPublisher.publishEvent(event);
+    }
+}
@@ -0,0 +1,126 @@
+package com.file.system.springboot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// BCrypt is ~100ms of CPU per call, so it runs on its own small pool instead of on request threads, where
+// a burst of logins would starve downloads and listings. When more work is queued than the pool can get
+// through in reasonable time, new calls are refused with RejectedExecutionException rather than queued.
+//
+// A user who logged in recently can log in again without BCrypt: the password they were verified with is
+// remembered as an HMAC under a per-process key, bound to the stored hash so that a password change does
+// not match any more.
+@Component
+public class PasswordHasher {
+
+    private final ThreadPoolExecutor executor;
+    private final Cache<Long, byte[]> recentlyVerified;
+    private final SecretKeySpec fastPathKey;
+    private final MeterRegistry meterRegistry;
+    private final Timer queueWait;
+    private final Counter rejected;
+
+    public PasswordHasher(MeterRegistry meterRegistry,
+                          @Value("${app.auth.password.threads:0}") int threads,
+                          @Value("${app.auth.password.queue-capacity:256}") int queueCapacity,
+                          @Value("${app.auth.password.fast-path-ttl:5m}") Duration fastPathTtl,
+                          @Value("${app.auth.password.fast-path-max-size:10000}") long fastPathMaxSize) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hasher-", 0).daemon().factory());
+        this.recentlyVerified = Caffeine.newBuilder()
+                .maximumSize(fastPathMaxSize)
+                .expireAfterWrite(fastPathTtl)
+                .build();
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.fastPathKey = new SecretKeySpec(secret, "HmacSHA256");
+        this.meterRegistry = meterRegistry;
+
+        this.queueWait = Timer.builder("auth.password.queue.wait")
+                .description("Time password work waited for a hasher thread")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("auth.password.rejected")
+                .description("Password checks and hashes refused because the hasher queue was full")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.queue", executor, e -> e.getQueue().size())
+                .description("Password checks and hashes waiting for a hasher thread")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public CompletableFuture<Boolean> check(Long userId, String rawPassword, String passwordHash) {
+        byte[] fingerprint = fingerprint(rawPassword, passwordHash);
+        byte[] remembered = recentlyVerified.getIfPresent(userId);
+        if (remembered != null && MessageDigest.isEqual(remembered, fingerprint)) {
+            meterRegistry.counter("auth.password.check", "path", "fast", "outcome", "match").increment();
+            return CompletableFuture.completedFuture(true);
+        }
+        return submit("check", () -> {
+            boolean matches = BCrypt.checkpw(rawPassword, passwordHash);
+            if (matches) {
+                recentlyVerified.put(userId, fingerprint);
+            }
+            meterRegistry.counter("auth.password.check", "path", "bcrypt", "outcome", matches ? "match" : "mismatch")
+                    .increment();
+            return matches;
+        });
+    }
+
+    public CompletableFuture<String> hash(String rawPassword) {
+        return submit("hash", () -> BCrypt.hashpw(rawPassword, BCrypt.gensalt()));
+    }
+
+    private <T> CompletableFuture<T> submit(String operation, Supplier<T> work) {
+        long queuedAt = System.nanoTime();
+        Timer timer = meterRegistry.timer("auth.password.work", "operation", operation);
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return timer.record(work);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    private byte[] fingerprint(String rawPassword, String passwordHash) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(fastPathKey);
+            mac.update(passwordHash.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(rawPassword.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
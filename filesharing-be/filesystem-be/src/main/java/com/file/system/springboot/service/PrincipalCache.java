@@ -0,0 +1,46 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+// Users behind valid tokens, so authenticating a request does not read the users table. Changes made
+// through JPA on this replica evict the entry right away (UserChangeListener); changes made elsewhere
+// are picked up once the entry expires.
+@Component
+public class PrincipalCache {
+
+    private final UserRepository userRepository;
+    private final Cache<Long, AuthenticatedUser> cache;
+
+    public PrincipalCache(UserRepository userRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.auth.principal-cache.max-size:10000}") long maxSize,
+                          @Value("${app.auth.principal-cache.ttl:5m}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "auth.principals");
+    }
+
+    // Unknown users are not cached, so an id is never remembered as missing after it has been created
+    public Optional<AuthenticatedUser> get(Long userId) {
+        return Optional.ofNullable(cache.get(userId,
+                id -> userRepository.findById(id).map(AuthenticatedUser::of).orElse(null)));
+    }
+
+    public void invalidate(Long userId) {
+        cache.invalidate(userId);
+    }
+}
@@ -0,0 +1,279 @@
+package com.file.system.springboot.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+// Objects in an S3-compatible bucket, so any pod can serve any file. Large objects are uploaded as parts
+// in parallel; reads are ranged GETs.
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "s3")
+public class S3StorageBackend implements StorageBackend {
+    // S3 limit: a multipart upload has at most 10,000 parts
+    private static final int MAX_PARTS = 10_000;
+
+    private final S3Client s3;
+    private final String bucket;
+    private final long partSize;
+    private final Path tempRoot;
+    private final ExecutorService transfers;
+
+    public S3StorageBackend(S3Client s3,
+                            @Value("${app.storage.s3.bucket}") String bucket,
+                            @Value("${app.storage.s3.part-size:16MB}") DataSize partSize,
+                            @Value("${app.storage.s3.concurrency:8}") int concurrency,
+                            @Value("${app.storage.s3.staging-location:${java.io.tmpdir}/filesharing-staging}") String stagingLocation) throws IOException {
+        this.s3 = s3;
+        this.bucket = bucket;
+        this.partSize = partSize.toBytes();
+        this.tempRoot = Paths.get(stagingLocation).toAbsolutePath().normalize();
+        this.transfers = Executors.newFixedThreadPool(concurrency,
+                Thread.ofPlatform().name("s3-transfer-", 0).daemon().factory());
+        Files.createDirectories(this.tempRoot);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        transfers.shutdownNow();
+    }
+
+    // Staging stays on local scratch space; only finished objects go to the bucket
+    @Override
+    public Path createTempFile() throws IOException {
+        return Files.createTempFile(tempRoot, "upload-", ".part");
+    }
+
+    @Override
+    public void put(String storageKey, Path source) throws IOException {
+        long size = Files.size(source);
+        if (size <= partSize) {
+            s3.putObject(b -> b.bucket(bucket).key(storageKey), RequestBody.fromFile(source));
+        } else {
+            uploadInParts(storageKey, source, size);
+        }
+        Files.deleteIfExists(source);
+    }
+
+    private void uploadInParts(String storageKey, Path source, long size) throws IOException {
+        long chunk = Math.max(partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+        String uploadId = s3.createMultipartUpload(b -> b.bucket(bucket).key(storageKey)).uploadId();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            List<Callable<CompletedPart>> parts = new ArrayList<>();
+            for (long position = 0; position < size; position += chunk) {
+                int partNumber = parts.size() + 1;
+                long length = Math.min(chunk, size - position);
+                // Mapped rather than read, so in-flight parts are served from the page cache
+                MappedByteBuffer slice = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                parts.add(() -> {
+                    String etag = s3.uploadPart(b -> b.bucket(bucket).key(storageKey).uploadId(uploadId)
+                                    .partNumber(partNumber).contentLength(length),
+                            RequestBody.fromContentProvider(() -> new ByteBufferInputStream(slice.duplicate()),
+                                    length, "application/octet-stream")).eTag();
+                    return CompletedPart.builder().partNumber(partNumber).eTag(etag).build();
+                });
+            }
+            List<CompletedPart> completed = runAll(parts);
+            s3.completeMultipartUpload(b -> b.bucket(bucket).key(storageKey).uploadId(uploadId)
+                    .multipartUpload(m -> m.parts(completed)));
+        } catch (IOException | RuntimeException e) {
+            abortQuietly(storageKey, uploadId);
+            throw e;
+        }
+    }
+
+    private List<CompletedPart> runAll(List<Callable<CompletedPart>> parts) throws IOException {
+        List<Future<CompletedPart>> futures = parts.stream().map(transfers::submit).toList();
+        List<CompletedPart> completed = new ArrayList<>(futures.size());
+        try {
+            for (Future<CompletedPart> future : futures) {
+                completed.add(future.get());
+            }
+            return completed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while transferring parts");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    @Override
+    public boolean exists(String storageKey) throws IOException {
+        try {
+            head(storageKey);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public long size(String storageKey) throws IOException {
+        return head(storageKey).contentLength();
+    }
+
+    private HeadObjectResponse head(String storageKey) throws IOException {
+        try {
+            return s3.headObject(b -> b.bucket(bucket).key(storageKey));
+        } catch (S3Exception e) {
+            throw notFound(storageKey, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String storageKey) throws IOException {
+        try {
+            return s3.getObject(b -> b.bucket(bucket).key(storageKey));
+        } catch (S3Exception e) {
+            throw notFound(storageKey, e);
+        }
+    }
+
+    @Override
+    public void transferTo(String storageKey, long position, long count, WritableByteChannel target) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        String range = "bytes=" + position + "-" + (position + count - 1);
+        try (InputStream in = s3.getObject(b -> b.bucket(bucket).key(storageKey).range(range))) {
+            // The target belongs to the caller and must stay open
+            long copied = in.transferTo(Channels.newOutputStream(target));
+            if (copied != count) {
+                throw new EOFException("Unexpected end of " + storageKey + " at offset " + (position + copied));
+            }
+        } catch (S3Exception e) {
+            throw notFound(storageKey, e);
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String storageKey) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void delete(String storageKey) {
+        s3.deleteObject(b -> b.bucket(bucket).key(storageKey));
+    }
+
+    // S3 lists keys in UTF-8 byte order, which matches String order for everything outside the surrogate range
+    @Override
+    public Stream<String> list() {
+        return s3.listObjectsV2Paginator(b -> b.bucket(bucket).maxKeys(1000)).contents().stream()
+                .map(S3Object::key);
+    }
+
+    // Each chunk of a chunked upload becomes one part, so chunks must be at least 5MB except the last
+    @Override
+    public String beginUpload(String storageKey) {
+        return s3.createMultipartUpload(b -> b.bucket(bucket).key(storageKey)).uploadId();
+    }
+
+    @Override
+    public void writePart(String storageKey, String uploadId, int index, long position, InputStream in, long count) {
+        s3.uploadPart(b -> b.bucket(bucket).key(storageKey).uploadId(uploadId).partNumber(index + 1).contentLength(count),
+                RequestBody.fromInputStream(in, count));
+    }
+
+    // The part list comes from S3 itself, so retried chunks just overwrite their part
+    @Override
+    public void completeUpload(String storageKey, String uploadId) {
+        List<CompletedPart> parts = s3.listPartsPaginator(b -> b.bucket(bucket).key(storageKey).uploadId(uploadId))
+                .parts().stream()
+                .map(part -> CompletedPart.builder().partNumber(part.partNumber()).eTag(part.eTag()).build())
+                .toList();
+        s3.completeMultipartUpload(b -> b.bucket(bucket).key(storageKey).uploadId(uploadId)
+                .multipartUpload(m -> m.parts(parts)));
+    }
+
+    @Override
+    public void abortUpload(String storageKey, String uploadId) {
+        abortQuietly(storageKey, uploadId);
+    }
+
+    private void abortQuietly(String storageKey, String uploadId) {
+        try {
+            s3.abortMultipartUpload(b -> b.bucket(bucket).key(storageKey).uploadId(uploadId));
+        } catch (NoSuchUploadException e) {
+            // Already completed or aborted
+        } catch (S3Exception e) {
+            // The bucket's lifecycle rule for incomplete uploads cleans up what is left
+        }
+    }
+
+    private static IOException notFound(String storageKey, S3Exception e) {
+        if (e.statusCode() == 404) {
+            NoSuchFileException notFound = new NoSuchFileException(storageKey);
+            notFound.initCause(e);
+            return notFound;
+        }
+        return new IOException("S3 request for " + storageKey + " failed", e);
+    }
+
+    // Reads a slice of a mapped file without copying it to the heap first
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
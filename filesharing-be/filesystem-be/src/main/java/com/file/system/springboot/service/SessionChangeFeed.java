@@ -0,0 +1,110 @@
+package com.file.system.springboot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.file.system.springboot.model.SessionChange;
+import com.file.system.springboot.repository.SessionChangeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Carries SessionEvents between replicas through passhare_session_changes. Each event is written in the
+// transaction that caused it; every replica polls the table and republishes the events other replicas
+// wrote, so its ActiveSessionRegistry and event streams see them too.
+//
+// Rows are read back by age rather than by id: ids are handed out before commit, so a smaller one can
+// become visible after a larger one has been read. Everything within the lookback is re-read on each
+// poll and ids already handled are skipped; the lookback also absorbs clock differences between replicas.
+@Component
+public class SessionChangeFeed {
+    private static final Logger log = LoggerFactory.getLogger(SessionChangeFeed.class);
+
+    private final String origin = UUID.randomUUID().toString();
+    private final SessionChangeRepository changeRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final Duration lookback;
+    private final Duration retention;
+    // Only touched by poll(), which never overlaps itself
+    private final Map<Long, Instant> handled = new HashMap<>();
+    private boolean primed;
+
+    public SessionChangeFeed(SessionChangeRepository changeRepository,
+                             ApplicationEventPublisher eventPublisher,
+                             ObjectMapper objectMapper,
+                             @Value("${app.passhare.changes.lookback:30s}") Duration lookback,
+                             @Value("${app.passhare.changes.retention:1h}") Duration retention) {
+        this.changeRepository = changeRepository;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.lookback = lookback;
+        this.retention = retention;
+    }
+
+    // Must run inside the transaction making the change, so the row commits or rolls back with it
+    public void record(SessionEvent event) {
+        SessionChange change = new SessionChange();
+        change.setSessionId(event.sessionId());
+        change.setType(event.type());
+        try {
+            change.setData(objectMapper.writeValueAsString(event.data()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        change.setOrigin(origin);
+        change.setCreatedAt(Instant.now());
+        changeRepository.save(change);
+    }
+
+    @Scheduled(fixedDelayString = "${app.passhare.changes.poll-interval:1s}")
+    public void poll() {
+        Instant since = Instant.now().minus(lookback);
+        List<SessionChange> changes;
+        try {
+            changes = changeRepository.findByCreatedAtAfterOrderById(since);
+        } catch (DataAccessException e) {
+            log.warn("Could not read Passhare session changes", e);
+            return;
+        }
+        for (SessionChange change : changes) {
+            if (handled.putIfAbsent(change.getId(), change.getCreatedAt()) != null
+                    || origin.equals(change.getOrigin())) {
+                continue;
+            }
+            // Whatever happened before this replica was watching is already in the database it loads from
+            if (primed) {
+                eventPublisher.publishEvent(new SessionEvent(change.getSessionId(), change.getType(), data(change)));
+            }
+        }
+        handled.values().removeIf(createdAt -> !createdAt.isAfter(since));
+        primed = true;
+    }
+
+    @Scheduled(cron = "${app.passhare.changes.purge-cron:0 */10 * * * *}")
+    @Transactional
+    public void purge() {
+        changeRepository.deleteOlderThan(Instant.now().minus(retention));
+    }
+
+    private Map<String, Object> data(SessionChange change) {
+        try {
+            return objectMapper.readValue(change.getData(), new TypeReference<>() {});
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring unreadable data of Passhare session change {}", change.getId(), e);
+            return Map.of();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.file.system.springboot.service;
+
+import java.util.Map;
+
+// Something participants of a Passhare session should see without polling, or replicas should know about
+// (session-created); published by PasshareSessionService and delivered once the transaction that caused
+// it has committed
+public record SessionEvent(Long sessionId, String type, Map<String, Object> data) {
+
+    public static final String SESSION_CREATED = "session-created";
+    public static final String PARTICIPANT_JOINED = "participant-joined";
+    public static final String PARTICIPANT_LEFT = "participant-left";
+    public static final String FILE_SHARED = "file-shared";
+    public static final String FILE_REMOVED = "file-removed";
+    public static final String SESSION_ENDED = "session-ended";
+}
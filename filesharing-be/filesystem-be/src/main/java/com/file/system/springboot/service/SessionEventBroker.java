@@ -0,0 +1,170 @@
+package com.file.system.springboot.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Pushes SessionEvents to the participants subscribed to a session over Server-Sent Events. An idle
+// subscriber is only an open connection in async mode, without a request thread; writes happen on short
+// virtual threads, one subscriber at a time in publishing order, so a slow client never holds up the
+// transaction that published the event or the other subscribers. A subscriber that falls max-pending
+// events behind is dropped; the client reconnects and reloads the session.
+@Component
+public class SessionEventBroker {
+    private static final Logger log = LoggerFactory.getLogger(SessionEventBroker.class);
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final long timeoutMillis;
+    private final int maxPending;
+
+    public SessionEventBroker(MeterRegistry meterRegistry,
+                              @Value("${app.passhare.events.timeout:30m}") Duration timeout,
+                              @Value("${app.passhare.events.max-pending:256}") int maxPending) {
+        this.timeoutMillis = timeout.toMillis();
+        this.maxPending = Math.max(1, maxPending);
+        Gauge.builder("passhare.events.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open Passhare session event streams")
+                .register(meterRegistry);
+    }
+
+    // The caller has checked that the user takes part in the session; the stream is closed once they leave it
+    public SseEmitter subscribe(Long sessionId, Long userId) {
+        SseEmitter emitter = newEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(sessionId, userId, emitter);
+        subscribers.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> remove(subscriber));
+        // Tells the client the stream is live, and gets the headers through proxies right away
+        subscriber.send(SseEmitter.event().name("ready").data(Map.of("sessionId", sessionId)));
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void publish(SessionEvent event) {
+        Set<Subscriber> forSession = subscribers.get(event.sessionId());
+        if (forSession == null) {
+            return;
+        }
+        Long leftUserId = SessionEvent.PARTICIPANT_LEFT.equals(event.type()) ? userId(event) : null;
+        for (Subscriber subscriber : forSession) {
+            subscriber.send(SseEmitter.event().name(event.type()).data(event.data(), MediaType.APPLICATION_JSON));
+            if (SessionEvent.SESSION_ENDED.equals(event.type()) || subscriber.userId.equals(leftUserId)) {
+                subscriber.close();
+            }
+        }
+    }
+
+    // Events relayed from other replicas come back from JSON, where the id may have become an Integer
+    private static Long userId(SessionEvent event) {
+        return event.data().get("userId") instanceof Number userId ? userId.longValue() : null;
+    }
+
+    // Keeps idle streams from being closed by proxies and notices clients that went away
+    @Scheduled(fixedDelayString = "${app.passhare.events.heartbeat:15s}")
+    public void heartbeat() {
+        subscribers.values().forEach(forSession -> forSession.forEach(
+                subscriber -> subscriber.send(SseEmitter.event().comment("heartbeat"))));
+    }
+
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.sessionId, (id, forSession) -> {
+            if (forSession.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return forSession.isEmpty() ? null : forSession;
+        });
+    }
+
+    private final class Subscriber {
+        private final Long sessionId;
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(Long sessionId, Long userId, SseEmitter emitter) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        void send(SseEmitter.SseEventBuilder event) {
+            enqueue(() -> {
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Dropping session {} subscriber: {}", sessionId, e.getMessage());
+                    closed.set(true);
+                    remove(this);
+                    emitter.completeWithError(e);
+                }
+            });
+        }
+
+        // Writes what is already queued, then ends the stream; nothing queued afterwards is sent
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                remove(this);
+                pending.add(emitter::complete);
+                drain();
+            }
+        }
+
+        private void enqueue(Runnable write) {
+            if (closed.get()) {
+                return;
+            }
+            if (queued.incrementAndGet() > maxPending) {
+                log.debug("Dropping session {} subscriber that is {} events behind", sessionId, maxPending);
+                pending.clear();
+                close();
+                return;
+            }
+            pending.add(write);
+            drain();
+        }
+
+        private void drain() {
+            if (draining.compareAndSet(false, true)) {
+                Thread.ofVirtual().name("session-events-" + sessionId).start(() -> {
+                    Runnable write;
+                    while ((write = pending.poll()) != null) {
+                        queued.decrementAndGet();
+                        write.run();
+                    }
+                    draining.set(false);
+                    // Picks up a write queued after the last poll but before draining was cleared
+                    if (!pending.isEmpty()) {
+                        drain();
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.repository.PasshareSessionRepository;
+import com.file.system.springboot.repository.SessionDeadline;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+// Ends Passhare sessions at their deadline. Deadlines wait in a DelayQueue, so the cost is proportional
+// to the sessions actually expiring, never to the table. They come from session-created events (this
+// replica's and, through the SessionChangeFeed, the others') and from an index scan of the deadlines in
+// the next couple of sweep intervals, run at startup and every sweep interval; that scan also catches
+// up on anything missed, e.g. while the database was unreachable. Every replica expires what it knows
+// about; the row lock in PasshareSessionService.expireSessions makes sure only one of them ends a session.
+//
+// Ended sessions are kept for the retention period and then deleted with their participants and files.
+@Component
+public class SessionExpiryScheduler implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(SessionExpiryScheduler.class);
+
+    private record Deadline(Long sessionId, Instant expiresAt) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Duration.between(Instant.now(), expiresAt));
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return expiresAt.compareTo(((Deadline) other).expiresAt);
+        }
+    }
+
+    private final PasshareSessionService sessionService;
+    private final PasshareSessionRepository sessionRepository;
+    private final Duration sweepInterval;
+    private final Duration retention;
+    private final int batchSize;
+    private final DelayQueue<Deadline> deadlines = new DelayQueue<>();
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private Thread worker;
+
+    public SessionExpiryScheduler(PasshareSessionService sessionService,
+                                  PasshareSessionRepository sessionRepository,
+                                  @Value("${app.passhare.expiry.sweep-interval:1m}") Duration sweepInterval,
+                                  @Value("${app.passhare.expiry.retention:1d}") Duration retention,
+                                  @Value("${app.passhare.expiry.batch-size:500}") int batchSize) {
+        this.sessionService = sessionService;
+        this.sessionRepository = sessionRepository;
+        this.sweepInterval = sweepInterval;
+        this.retention = retention;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        sweep();
+        worker = Thread.ofPlatform().name("session-expiry").daemon().start(this::run);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    public void schedule(Long sessionId, Instant expiresAt) {
+        if (expiresAt != null && queued.add(sessionId)) {
+            deadlines.add(new Deadline(sessionId, expiresAt));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionEvent(SessionEvent event) {
+        if (SessionEvent.SESSION_CREATED.equals(event.type())) {
+            // An Instant here, an ISO-8601 string when it came from another replica
+            schedule(event.sessionId(), Instant.parse(event.data().get("expiresAt").toString()));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.passhare.expiry.sweep-interval:1m}",
+            initialDelayString = "${app.passhare.expiry.sweep-interval:1m}")
+    public void sweep() {
+        try {
+            Instant horizon = Instant.now().plus(sweepInterval.multipliedBy(2));
+            for (SessionDeadline deadline : sessionRepository.findDeadlinesBefore(horizon)) {
+                schedule(deadline.id(), deadline.expiresAt());
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not read Passhare session deadlines", e);
+        }
+    }
+
+    @Scheduled(cron = "${app.passhare.expiry.purge-cron:0 */15 * * * *}")
+    public void purge() {
+        Instant cutoff = Instant.now().minus(retention);
+        try {
+            int purged;
+            do {
+                purged = sessionService.purgeEndedSessions(cutoff, batchSize);
+            } while (purged == batchSize);
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Could not purge ended Passhare sessions", e);
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Deadline> due = new ArrayList<>();
+            try {
+                due.add(deadlines.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            deadlines.drainTo(due, batchSize - 1);
+            List<Long> sessionIds = due.stream().map(Deadline::sessionId).toList();
+            try {
+                sessionService.expireSessions(sessionIds);
+            } catch (RuntimeException e) {
+                // Picked up again by the next sweep
+                log.warn("Could not expire {} Passhare sessions", sessionIds.size(), e);
+            } finally {
+                sessionIds.forEach(queued::remove);
+            }
+        }
+    }
+}
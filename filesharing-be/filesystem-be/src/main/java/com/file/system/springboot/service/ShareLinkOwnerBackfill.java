@@ -0,0 +1,31 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.repository.ShareLinkRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Fills share_links.owner_id for links created before the column existed; a no-op once they all have one
+@Component
+public class ShareLinkOwnerBackfill implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(ShareLinkOwnerBackfill.class);
+
+    private final ShareLinkRepository shareLinkRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public ShareLinkOwnerBackfill(ShareLinkRepository shareLinkRepository, PlatformTransactionManager transactionManager) {
+        this.shareLinkRepository = shareLinkRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Integer updated = transactionTemplate.execute(status -> shareLinkRepository.backfillOwnerIds());
+        if (updated != null && updated > 0) {
+            log.info("Backfilled owner_id on {} share links", updated);
+        }
+    }
+}
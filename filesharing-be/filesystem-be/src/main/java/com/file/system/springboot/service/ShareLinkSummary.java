@@ -0,0 +1,18 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.ShareLink;
+import com.file.system.springboot.model.ShareType;
+
+import java.time.Instant;
+
+public record ShareLinkSummary(Long id, String linkId, Long fileId, ShareType shareType, String permissions,
+                               Instant expiryAt, Instant createdAt, String createdBy, boolean passwordProtected) {
+
+    // fileItem is a lazy proxy here; reading its id does not load the file
+    static ShareLinkSummary of(ShareLink link) {
+        return new ShareLinkSummary(link.getId(), link.getLinkId(),
+                link.getFileItem() != null ? link.getFileItem().getId() : null, link.getShareType(),
+                link.getPermissions(), link.getExpiryAt(), link.getCreatedAt(), link.getCreatedBy(),
+                link.getPasswordHash() != null);
+    }
+}
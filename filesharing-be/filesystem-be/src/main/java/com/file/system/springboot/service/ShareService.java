@@ -5,16 +5,22 @@ import com.file.system.springboot.model.ShareLink;
 import com.file.system.springboot.model.ShareType;
 import com.file.system.springboot.repository.FileItemRepository;
 import com.file.system.springboot.repository.ShareLinkRepository;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 @Service
 public class ShareService {
+    private static final Map<String, Class<?>> SHARE_SORT_KEYS = Map.of("createdAt", Instant.class);
+
     private final ShareLinkRepository shareLinkRepository;
     private final FileItemRepository fileItemRepository;
 
@@ -28,6 +34,7 @@ public class ShareService {
         FileItem fileItem = fileItemRepository.findByIdAndOwnerId(fileId, ownerId).orElseThrow();
         ShareLink link = new ShareLink();
         link.setFileItem(fileItem);
+        link.setOwnerId(ownerId);
         link.setShareType(type);
         link.setPermissions(permissionsCsv);
         link.setExpiryAt(expiryAt);
@@ -42,18 +49,22 @@ public class ShareService {
     }
 
     public List<ShareLink> listAll(Long ownerId) {
-        // naive filtering by owner via file relation; better to store owner_id on share_links as well
-        return shareLinkRepository.findAll().stream()
-                .filter(s -> s.getFileItem() != null && ownerId.equals(s.getFileItem().getOwnerId()))
-                .toList();
+        return shareLinkRepository.findAllByOwnerId(ownerId);
+    }
+
+    @Transactional(readOnly = true)
+    public ListingPage<ShareLinkSummary> listPage(Long ownerId, String sort, String order, String cursor, int limit) {
+        KeysetScrollPosition position = KeysetCursor.position(cursor, sort, SHARE_SORT_KEYS, limit);
+        Specification<ShareLink> spec = (root, query, cb) -> cb.equal(root.get("ownerId"), ownerId);
+        Window<ShareLink> window = shareLinkRepository.findBy(spec,
+                q -> q.sortBy(KeysetCursor.sort(sort, order)).limit(limit).scroll(position));
+        return ListingPage.of(window, ShareLinkSummary::of);
     }
 
     @Transactional
     public ShareLink update(Long id, Long ownerId, ShareType type, String permissionsCsv, Instant expiryAt, String passwordHash) {
-        ShareLink link = shareLinkRepository.findById(id).orElseThrow();
-        if (link.getFileItem() == null || !ownerId.equals(link.getFileItem().getOwnerId())) {
-            throw new IllegalArgumentException("Not found");
-        }
+        ShareLink link = shareLinkRepository.findByIdAndOwnerId(id, ownerId)
+                .orElseThrow(() -> new IllegalArgumentException("Not found"));
         if (type != null) link.setShareType(type);
         if (permissionsCsv != null) link.setPermissions(permissionsCsv);
         link.setExpiryAt(expiryAt);
@@ -63,10 +74,8 @@ public class ShareService {
 
     @Transactional
     public void delete(Long id, Long ownerId) {
-        ShareLink link = shareLinkRepository.findById(id).orElseThrow();
-        if (link.getFileItem() == null || !ownerId.equals(link.getFileItem().getOwnerId())) {
-            throw new IllegalArgumentException("Not found");
-        }
+        ShareLink link = shareLinkRepository.findByIdAndOwnerId(id, ownerId)
+                .orElseThrow(() -> new IllegalArgumentException("Not found"));
         shareLinkRepository.delete(link);
     }
 }
@@ -0,0 +1,122 @@
+package com.file.system.springboot.service;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Helpers for walking large sets of storage keys in ascending order without holding them in memory
+final class SortedKeys {
+
+    private SortedKeys() {
+    }
+
+    // Both inputs in ascending order; keys present in both come out once
+    static Iterator<String> union(Iterator<String> left, Iterator<String> right) {
+        PeekingIterator a = new PeekingIterator(left);
+        PeekingIterator b = new PeekingIterator(right);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return a.hasNext() || b.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!a.hasNext()) {
+                    return b.next();
+                }
+                if (!b.hasNext()) {
+                    return a.next();
+                }
+                int cmp = a.peek().compareTo(b.peek());
+                if (cmp == 0) {
+                    b.next();
+                }
+                return cmp <= 0 ? a.next() : b.next();
+            }
+        };
+    }
+
+    // Any number of ascending inputs, merged in pairs so each key goes through about log2(n) comparisons
+    static Iterator<String> union(List<Iterator<String>> sources) {
+        if (sources.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+        if (sources.size() == 1) {
+            return sources.get(0);
+        }
+        int middle = sources.size() / 2;
+        return union(union(sources.subList(0, middle)), union(sources.subList(middle, sources.size())));
+    }
+
+    // Keyset pagination: fetches the next page with the last key seen so far, starting from ""
+    static Iterator<String> paged(Function<String, List<String>> nextPage) {
+        return new Iterator<>() {
+            private Iterator<String> page = Collections.emptyIterator();
+            private String last = "";
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                if (!page.hasNext() && !exhausted) {
+                    List<String> keys = nextPage.apply(last);
+                    exhausted = keys.isEmpty();
+                    if (!exhausted) {
+                        last = keys.get(keys.size() - 1);
+                    }
+                    page = keys.iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+    }
+
+    static Stream<String> stream(Iterator<String> keys) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(keys, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    static final class PeekingIterator implements Iterator<String> {
+        private final Iterator<String> delegate;
+        private String next;
+
+        PeekingIterator(Iterator<String> delegate) {
+            this.delegate = delegate;
+        }
+
+        String peek() {
+            if (next == null && delegate.hasNext()) {
+                next = delegate.next();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            return next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null || delegate.hasNext();
+        }
+
+        @Override
+        public String next() {
+            String value = peek();
+            next = null;
+            return value;
+        }
+    }
+}
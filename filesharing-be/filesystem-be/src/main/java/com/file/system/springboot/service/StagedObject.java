@@ -0,0 +1,7 @@
+package com.file.system.springboot.service;
+
+import java.nio.file.Path;
+
+public record StagedObject(Path tempFile, String originalFilename, String digest, long size, String mimeType,
+                           String encoding) {
+}
@@ -0,0 +1,45 @@
+package com.file.system.springboot.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// Where stored bytes physically live. StorageService keeps the bookkeeping (digests, references,
+// compression) and talks to exactly one backend, selected with app.storage.backend.
+public interface StorageBackend {
+
+    // Local scratch file an upload is staged in before it is stored under its key
+    Path createTempFile() throws IOException;
+
+    // Stores a staged file under the key; the file is consumed
+    void put(String storageKey, Path source) throws IOException;
+
+    boolean exists(String storageKey) throws IOException;
+
+    long size(String storageKey) throws IOException;
+
+    InputStream open(String storageKey) throws IOException;
+
+    void transferTo(String storageKey, long position, long count, WritableByteChannel target) throws IOException;
+
+    // A file on this machine that can be handed to sendfile, if the backend has one
+    Optional<Path> localPath(String storageKey);
+
+    void delete(String storageKey) throws IOException;
+
+    // Every stored key in ascending String order, read lazily; the stream has to be closed
+    Stream<String> list() throws IOException;
+
+    // Chunked uploads: parts may arrive in any order and concurrently. Returns the backend's
+    // upload id, or null when it does not need one.
+    String beginUpload(String storageKey) throws IOException;
+
+    void writePart(String storageKey, String uploadId, int index, long position, InputStream in, long count) throws IOException;
+
+    void completeUpload(String storageKey, String uploadId) throws IOException;
+
+    void abortUpload(String storageKey, String uploadId) throws IOException;
+}
@@ -0,0 +1,56 @@
+package com.file.system.springboot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Drops the unique index Hibernate once created on file_items.storage_key, which content-addressed storage
+// cannot live with: the second upload of the same bytes would fail on it. Runs before the server takes
+// requests; costs one information_schema query once the index is gone.
+@Component
+public class StorageKeyIndexMigration implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(StorageKeyIndexMigration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean contentAddressed;
+
+    public StorageKeyIndexMigration(JdbcTemplate jdbcTemplate,
+                                    @Value("${app.storage.content-addressed:false}") boolean contentAddressed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.contentAddressed = contentAddressed;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!contentAddressed) {
+            return;
+        }
+        List<String> indexes;
+        try {
+            indexes = jdbcTemplate.queryForList("SELECT index_name FROM information_schema.statistics "
+                    + "WHERE table_schema = DATABASE() AND table_name = 'file_items' AND non_unique = 0 "
+                    + "AND index_name <> 'PRIMARY' GROUP BY index_name "
+                    + "HAVING COUNT(*) = 1 AND MAX(column_name) = 'storage_key'", String.class);
+        } catch (DataAccessException e) {
+            // Not MySQL; such databases were never created with the unique index
+            log.debug("Could not look up indexes on file_items.storage_key", e);
+            return;
+        }
+        for (String index : indexes) {
+            try {
+                jdbcTemplate.execute("ALTER TABLE file_items DROP INDEX `" + index.replace("`", "``") + "`");
+            } catch (DataAccessException e) {
+                throw new IllegalStateException("Content-addressed storage needs the unique index " + index
+                        + " on file_items.storage_key dropped (see content_addressed_storage.sql), or set "
+                        + "app.storage.content-addressed=false", e);
+            }
+            log.info("Dropped unique index {} on file_items.storage_key for content-addressed storage", index);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.file.system.springboot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+// Moves files left in the flat storage root into the sharded layout, in the background and rate limited.
+//
+// A download may have handed a flat path to Tomcat's sendfile, which opens it only after the request
+// handler has returned. So files are hard-linked into place first: from then on resolve finds the sharded
+// path, while the flat one keeps working. Flat names are removed in a second pass, once every link is at
+// least the grace period old.
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "local", matchIfMissing = true)
+public class StorageLayoutMigrator {
+    private static final Logger log = LoggerFactory.getLogger(StorageLayoutMigrator.class);
+
+    private final LocalStorageBackend storage;
+    private final int filesPerSecond;
+    private final Duration gracePeriod;
+
+    public StorageLayoutMigrator(LocalStorageBackend storage,
+                                 @Value("${app.storage.migration.files-per-second:500}") int filesPerSecond,
+                                 @Value("${app.storage.migration.grace-period:1m}") Duration gracePeriod) {
+        this.storage = storage;
+        this.filesPerSecond = Math.max(1, filesPerSecond);
+        this.gracePeriod = gracePeriod;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!storage.isSharded()) {
+            return;
+        }
+        Thread thread = new Thread(this::migrate, "storage-layout-migrator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void migrate() {
+        try {
+            long linked = linkAll();
+            if (linked > 0) {
+                Thread.sleep(gracePeriod.toMillis());
+            }
+            long removed = removeLinked();
+            if (linked > 0 || removed > 0) {
+                log.info("Linked {} files into the sharded storage layout and removed {} flat names", linked, removed);
+            }
+        } catch (IOException e) {
+            log.error("Storage layout migration stopped", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Gives every flat file a second name in the sharded layout
+    long linkAll() throws IOException, InterruptedException {
+        long linked = 0;
+        Throttle throttle = new Throttle();
+        // DirectoryStream iterates lazily, so a root with millions of entries is never listed in memory
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(storage.getStorageRoot(), Files::isRegularFile)) {
+            for (Path flat : entries) {
+                Path target = storage.shardedPath(flat.getFileName().toString());
+                if (target == null) {
+                    continue;
+                }
+                try {
+                    Files.createDirectories(target.getParent());
+                    link(flat, target);
+                    linked++;
+                } catch (FileAlreadyExistsException e) {
+                    // A sharded copy already wins in resolve; the flat one is removed as a leftover
+                } catch (IOException e) {
+                    log.warn("Could not migrate {} to the sharded layout", flat.getFileName(), e);
+                }
+                throttle.acquire();
+            }
+        }
+        return linked;
+    }
+
+    // Drops flat names that have a sharded counterpart
+    long removeLinked() throws IOException, InterruptedException {
+        long removed = 0;
+        Throttle throttle = new Throttle();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(storage.getStorageRoot(), Files::isRegularFile)) {
+            for (Path flat : entries) {
+                Path target = storage.shardedPath(flat.getFileName().toString());
+                if (target != null && Files.exists(target)) {
+                    Files.deleteIfExists(flat);
+                    removed++;
+                    throttle.acquire();
+                }
+            }
+        }
+        return removed;
+    }
+
+    // Filesystems without hard links get a plain move, and with it the old race
+    private static void link(Path flat, Path target) throws IOException {
+        try {
+            Files.createLink(target, flat);
+        } catch (UnsupportedOperationException e) {
+            Files.move(flat, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private final class Throttle {
+        private long windowStart = System.nanoTime();
+        private int inWindow;
+
+        void acquire() throws InterruptedException {
+            if (++inWindow >= filesPerSecond) {
+                long elapsedMs = (System.nanoTime() - windowStart) / 1_000_000;
+                if (elapsedMs < 1000) {
+                    Thread.sleep(1000 - elapsedMs);
+                }
+                windowStart = System.nanoTime();
+                inWindow = 0;
+            }
+        }
+    }
+}
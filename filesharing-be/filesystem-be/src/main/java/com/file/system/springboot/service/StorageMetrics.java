@@ -0,0 +1,47 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.repository.StorageBlobRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@Component
+public class StorageMetrics {
+    private static final Duration REFRESH_INTERVAL = Duration.ofMinutes(1);
+
+    private final StorageBlobRepository storageBlobRepository;
+    private volatile long logicalBytes;
+    private volatile long physicalBytes;
+    private volatile Instant refreshedAt = Instant.EPOCH;
+
+    public StorageMetrics(StorageBlobRepository storageBlobRepository, MeterRegistry meterRegistry) {
+        this.storageBlobRepository = storageBlobRepository;
+        Gauge.builder("storage.blobs.logical.bytes", this, m -> m.refresh().logicalBytes)
+                .description("Bytes referenced by file items")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.blobs.physical.bytes", this, m -> m.refresh().physicalBytes)
+                .description("Bytes actually stored after deduplication")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.dedup.ratio", this, m -> {
+                    m.refresh();
+                    return m.physicalBytes == 0 ? 1.0 : (double) m.logicalBytes / m.physicalBytes;
+                })
+                .description("Logical bytes divided by physical bytes")
+                .register(meterRegistry);
+    }
+
+    // The sums scan storage_blobs, so scrapes share one result per refresh interval
+    private synchronized StorageMetrics refresh() {
+        if (refreshedAt.plus(REFRESH_INTERVAL).isBefore(Instant.now())) {
+            logicalBytes = storageBlobRepository.sumLogicalBytes();
+            physicalBytes = storageBlobRepository.sumPhysicalBytes();
+            refreshedAt = Instant.now();
+        }
+        return this;
+    }
+}
@@ -0,0 +1,225 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.QuarantinedBlob;
+import com.file.system.springboot.repository.FileItemRepository;
+import com.file.system.springboot.repository.QuarantinedBlobRepository;
+import com.file.system.springboot.repository.StorageBlobRepository;
+import com.file.system.springboot.repository.UploadSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Finds where storage and the database have drifted apart: stored objects nothing references (orphans)
+// and keys the database points at whose bytes are gone (dangling). Both sides are read as ascending key
+// streams and merge-joined, so neither is ever held in memory. The two sides may not sort a key the
+// same way (database collation vs String order); every mismatch is confirmed with a point lookup before
+// anything is done about it.
+//
+// Orphans are quarantined first and only purged once they have stayed unreferenced for the quarantine
+// period, which also covers uploads whose bytes are written before their row is committed. Dangling keys
+// are logged and counted; the rows are left alone.
+@Component
+public class StorageReconciler {
+    private static final Logger log = LoggerFactory.getLogger(StorageReconciler.class);
+    private static final int PAGE_SIZE = 1000;
+    private static final int MAX_LOGGED = 100;
+    private static final String LEASE_NAME = "storage-reconcile";
+
+    private final StorageBackend backend;
+    private final StorageService storageService;
+    private final StorageBlobRepository storageBlobRepository;
+    private final FileItemRepository fileItemRepository;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final QuarantinedBlobRepository quarantinedBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeases jobLeases;
+    private final Duration lease;
+    private final int keysPerSecond;
+    private final int purgesPerSecond;
+    private final Duration quarantinePeriod;
+    private final AtomicLong orphans = new AtomicLong();
+    private final AtomicLong dangling = new AtomicLong();
+    private final Counter purged;
+
+    public StorageReconciler(StorageBackend backend,
+                             StorageService storageService,
+                             StorageBlobRepository storageBlobRepository,
+                             FileItemRepository fileItemRepository,
+                             UploadSessionRepository uploadSessionRepository,
+                             QuarantinedBlobRepository quarantinedBlobRepository,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             JobLeases jobLeases,
+                             @Value("${app.storage.reconcile.lease:6h}") Duration lease,
+                             @Value("${app.storage.reconcile.keys-per-second:5000}") int keysPerSecond,
+                             @Value("${app.storage.reconcile.purge-per-second:50}") int purgesPerSecond,
+                             @Value("${app.storage.reconcile.quarantine-period:7d}") Duration quarantinePeriod) {
+        this.backend = backend;
+        this.storageService = storageService;
+        this.storageBlobRepository = storageBlobRepository;
+        this.fileItemRepository = fileItemRepository;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.quarantinedBlobRepository = quarantinedBlobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobLeases = jobLeases;
+        this.lease = lease;
+        this.keysPerSecond = Math.max(1, keysPerSecond);
+        this.purgesPerSecond = Math.max(1, purgesPerSecond);
+        this.quarantinePeriod = quarantinePeriod;
+        Gauge.builder("storage.reconcile.orphans", orphans, AtomicLong::get)
+                .description("Unreferenced stored objects found by the last reconciliation")
+                .register(meterRegistry);
+        Gauge.builder("storage.reconcile.dangling", dangling, AtomicLong::get)
+                .description("Referenced keys without stored bytes found by the last reconciliation")
+                .register(meterRegistry);
+        this.purged = Counter.builder("storage.reconcile.purged")
+                .description("Quarantined objects deleted from storage")
+                .register(meterRegistry);
+    }
+
+    // Every replica is woken up; only the one that gets the lease does the work
+    @Scheduled(cron = "${app.storage.reconcile.cron:0 0 3 * * *}")
+    public void reconcile() {
+        try {
+            if (!jobLeases.acquire(LEASE_NAME, lease)) {
+                log.debug("Storage reconciliation is running on another replica");
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not take the storage reconciliation lease", e);
+            return;
+        }
+        try {
+            scan();
+            purge();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Storage reconciliation failed", e);
+        } finally {
+            try {
+                jobLeases.release(LEASE_NAME);
+            } catch (RuntimeException e) {
+                // The lease runs out by itself
+                log.warn("Could not give up the storage reconciliation lease", e);
+            }
+        }
+    }
+
+    void scan() throws IOException {
+        Iterator<String> databaseKeys = SortedKeys.union(
+                SortedKeys.paged(after -> storageBlobRepository.findKeysAfter(after, Limit.of(PAGE_SIZE))),
+                SortedKeys.paged(after -> fileItemRepository.findStorageKeysAfter(after, Limit.of(PAGE_SIZE))));
+        long orphanCount = 0;
+        long danglingCount = 0;
+        Throttle throttle = new Throttle(keysPerSecond);
+        try (Stream<String> stored = backend.list()) {
+            SortedKeys.PeekingIterator storedKeys = new SortedKeys.PeekingIterator(stored.iterator());
+            SortedKeys.PeekingIterator referencedKeys = new SortedKeys.PeekingIterator(databaseKeys);
+            while (storedKeys.hasNext() || referencedKeys.hasNext()) {
+                throttle.acquire();
+                int cmp = !referencedKeys.hasNext() ? -1
+                        : !storedKeys.hasNext() ? 1
+                        : storedKeys.peek().compareTo(referencedKeys.peek());
+                if (cmp == 0) {
+                    storedKeys.next();
+                    referencedKeys.next();
+                } else if (cmp < 0) {
+                    String key = storedKeys.next();
+                    if (!isReferenced(key)) {
+                        transactionTemplate.executeWithoutResult(
+                                status -> quarantinedBlobRepository.quarantine(key, Instant.now()));
+                        if (orphanCount++ < MAX_LOGGED) {
+                            log.info("Quarantined unreferenced object {}", key);
+                        }
+                    }
+                } else {
+                    String key = referencedKeys.next();
+                    if (!backend.exists(key)) {
+                        if (danglingCount++ < MAX_LOGGED) {
+                            log.warn("Stored bytes missing for {}", key);
+                        }
+                    }
+                }
+            }
+        }
+        orphans.set(orphanCount);
+        dangling.set(danglingCount);
+        log.info("Storage reconciliation found {} unreferenced objects and {} missing ones", orphanCount, danglingCount);
+    }
+
+    // Deletes quarantined objects that are still unreferenced after the quarantine period
+    void purge() {
+        Instant cutoff = Instant.now().minus(quarantinePeriod);
+        Throttle throttle = new Throttle(purgesPerSecond);
+        List<QuarantinedBlob> batch;
+        do {
+            batch = quarantinedBlobRepository.findByFoundAtBeforeOrderByFoundAt(cutoff, Limit.of(PAGE_SIZE));
+            for (QuarantinedBlob blob : batch) {
+                throttle.acquire();
+                transactionTemplate.executeWithoutResult(status -> purge(blob.getStorageKey()));
+            }
+        } while (batch.size() == PAGE_SIZE);
+    }
+
+    // With the blob row locked, a content-addressed upload of the same bytes waits until they are gone and
+    // then stores them again, instead of finding its copy deleted afterwards
+    private void purge(String storageKey) {
+        boolean referenced = storageBlobRepository.lockByStorageKey(storageKey).isPresent()
+                || fileItemRepository.existsByStorageKey(storageKey)
+                || uploadSessionRepository.existsByStorageKey(storageKey);
+        if (!referenced) {
+            try {
+                storageService.delete(storageKey);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            purged.increment();
+        }
+        quarantinedBlobRepository.deleteById(storageKey);
+    }
+
+    private boolean isReferenced(String storageKey) {
+        return storageBlobRepository.existsById(storageKey)
+                || fileItemRepository.existsByStorageKey(storageKey)
+                || uploadSessionRepository.existsByStorageKey(storageKey);
+    }
+
+    // Spreads work evenly over time, permitsPerSecond at most
+    private static final class Throttle {
+        private final long nanosPerPermit;
+        private final long start = System.nanoTime();
+        private long permits;
+
+        Throttle(int permitsPerSecond) {
+            this.nanosPerPermit = 1_000_000_000L / permitsPerSecond;
+        }
+
+        void acquire() {
+            long aheadNanos = permits++ * nanosPerPermit - (System.nanoTime() - start);
+            if (aheadNanos > 0) {
+                try {
+                    Thread.sleep(aheadNanos / 1_000_000, (int) (aheadNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted", e);
+                }
+            }
+        }
+    }
+}
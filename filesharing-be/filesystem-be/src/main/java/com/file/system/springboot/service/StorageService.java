@@ -1,50 +1,234 @@
 package com.file.system.springboot.service;
 
+import com.file.system.springboot.repository.StorageBlobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.util.FileSystemUtils;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 public class StorageService {
+    private static final Logger log = LoggerFactory.getLogger(StorageService.class);
+    private static final int SAMPLE_LENGTH = 64 * 1024;
+    private static final int MAX_KEY_NAME_LENGTH = 100;
 
-    private final Path storageRoot;
+    private final StorageBackend backend;
+    private final boolean contentAddressed;
+    private final boolean compression;
+    private final double maxCompressionRatio;
+    private final StorageBlobRepository storageBlobRepository;
+    private final HotFileCache hotFileCache;
 
-    public StorageService(@Value("${app.storage.location}") String storageLocation) throws IOException {
-        this.storageRoot = Paths.get(storageLocation).toAbsolutePath().normalize();
-        Files.createDirectories(this.storageRoot);
+    public StorageService(StorageBackend backend,
+                          @Value("${app.storage.content-addressed:false}") boolean contentAddressed,
+                          @Value("${app.storage.compression.enabled:false}") boolean compression,
+                          @Value("${app.storage.compression.max-ratio:0.8}") double maxCompressionRatio,
+                          StorageBlobRepository storageBlobRepository,
+                          HotFileCache hotFileCache) {
+        this.backend = backend;
+        this.contentAddressed = contentAddressed;
+        this.compression = compression;
+        this.maxCompressionRatio = maxCompressionRatio;
+        this.storageBlobRepository = storageBlobRepository;
+        this.hotFileCache = hotFileCache;
     }
 
-    public String store(MultipartFile file) throws IOException {
-        String storageKey = UUID.randomUUID() + "_" + file.getOriginalFilename();
-        Path target = storageRoot.resolve(storageKey);
-        Files.copy(file.getInputStream(), target, StandardCopyOption.REPLACE_EXISTING);
-        return storageKey;
+    // Single pass over the upload: hashes, counts, sniffs and optionally compresses it while writing to a
+    // temp file from the backend, so store only has to hand it over. The digest and size always describe
+    // the original bytes.
+    public StagedObject stage(InputStream in, String originalFilename, String declaredMimeType) throws IOException {
+        MessageDigest sha256 = newSha256();
+        Path temp = backend.createTempFile();
+        try (InputStream source = new DigestInputStream(in, sha256)) {
+            byte[] head = source.readNBytes(SAMPLE_LENGTH);
+            String mimeType = MimeTypes.detect(head, originalFilename, declaredMimeType);
+            String encoding = compression && Compression.worthCompressing(mimeType, head, maxCompressionRatio)
+                    ? Compression.GZIP : null;
+            long size;
+            try (OutputStream out = encoding != null
+                    ? new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024)
+                    : Files.newOutputStream(temp)) {
+                out.write(head);
+                size = head.length + source.transferTo(out);
+            }
+            return new StagedObject(temp, originalFilename, HexFormat.of().formatHex(sha256.digest()), size,
+                    mimeType, encoding);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
     }
 
-    public Path resolve(String storageKey) {
-        return storageRoot.resolve(storageKey).normalize();
+    // Hands a staged upload to the backend under a key of its own; the slow part of storing it (an upload
+    // to the bucket with the s3 backend), so it runs before any transaction. The staged file is consumed.
+    public StoredObject store(StagedObject staged) throws IOException {
+        String storageKey = newStorageKey(staged.originalFilename());
+        backend.put(storageKey, staged.tempFile());
+        return new StoredObject(storageKey, staged.digest(), staged.size(), staged.encoding());
     }
 
-    public byte[] load(String storageKey) throws IOException {
-        return Files.readAllBytes(resolve(storageKey));
+    // Removes the temp file of an upload that was never stored; a no-op afterwards
+    public void discard(StagedObject staged) throws IOException {
+        Files.deleteIfExists(staged.tempFile());
     }
 
-    public void delete(String storageKey) throws IOException {
-        Files.deleteIfExists(resolve(storageKey));
+    public MultipartUpload beginUpload(String originalFilename) throws IOException {
+        String storageKey = newStorageKey(originalFilename);
+        return new MultipartUpload(storageKey, backend.beginUpload(storageKey));
     }
 
-    public void deleteAll() throws IOException {
-        FileSystemUtils.deleteRecursively(this.storageRoot);
-        Files.createDirectories(this.storageRoot);
+    public void writePart(MultipartUpload upload, int index, long position, InputStream in, long count) throws IOException {
+        backend.writePart(upload.storageKey(), upload.uploadId(), index, position, in, count);
+    }
+
+    public void abortUpload(MultipartUpload upload) throws IOException {
+        backend.abortUpload(upload.storageKey(), upload.uploadId());
+    }
+
+    // Assembles a chunked upload and hashes it; reads the whole file, so it is not meant for a transaction
+    public StoredObject completeUpload(MultipartUpload upload) throws IOException {
+        String storageKey = upload.storageKey();
+        backend.completeUpload(storageKey, upload.uploadId());
+
+        MessageDigest sha256 = newSha256();
+        long size;
+        try (InputStream source = new DigestInputStream(backend.open(storageKey), sha256)) {
+            size = source.transferTo(OutputStream.nullOutputStream());
+        }
+        return new StoredObject(storageKey, HexFormat.of().formatHex(sha256.digest()), size, null);
+    }
+
+    // Records stored bytes in storage_blobs; must run inside the caller's transaction. With content addressing,
+    // bytes that are already stored under another key are referenced there instead, and the returned object
+    // points at that blob, with its encoding. Only row locks on existing blobs are taken, so concurrent
+    // uploads of the same new content each keep their own copy rather than deadlocking over who stores it.
+    public StoredObject register(StoredObject stored) {
+        if (contentAddressed) {
+            Optional<StoredObject> existing = storageBlobRepository.findFirstByDigestAndSize(stored.digest(), stored.size())
+                    .flatMap(blob -> reference(blob.getStorageKey()));
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+        }
+        storageBlobRepository.addReference(stored.storageKey(), stored.digest(), stored.size(), stored.encoding(),
+                Instant.now());
+        return stored;
+    }
+
+    // Once the transaction is over: deletes the stored bytes unless the registered file points at them, i.e.
+    // when the same content was found elsewhere or the transaction rolled back (registeredKey null)
+    public void discard(StoredObject stored, String registeredKey) throws IOException {
+        if (!stored.storageKey().equals(registeredKey)) {
+            delete(stored.storageKey());
+        }
+    }
+
+    // Adds a reference to a stored blob, as long as it is still referenced by something else
+    public Optional<StoredObject> reference(String storageKey) {
+        return storageBlobRepository.findById(storageKey)
+                .filter(blob -> storageBlobRepository.addReferenceIfLive(blob.getStorageKey()) == 1)
+                .map(blob -> new StoredObject(blob.getStorageKey(), blob.getDigest(), blob.getSize(), blob.getEncoding()));
+    }
+
+    // Drops one reference and deletes the blob once nothing points at it any more. Inside a transaction only
+    // the row changes are part of it; the bytes go after commit, so a rollback never leaves a row without
+    // them. Bytes whose delete fails then are left for StorageReconciler to find.
+    public void release(String storageKey) throws IOException {
+        if (storageBlobRepository.removeReference(storageKey) > 0
+                && storageBlobRepository.deleteIfUnreferenced(storageKey) == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            delete(storageKey);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    delete(storageKey);
+                } catch (IOException e) {
+                    log.warn("Could not delete released blob {}", storageKey, e);
+                }
+            }
+        });
     }
-}
 
+    public long size(String storageKey) throws IOException {
+        return backend.size(storageKey);
+    }
 
+    public Optional<Path> localPath(String storageKey) {
+        return backend.localPath(storageKey);
+    }
+
+    // Reads the stored bytes into an off-heap buffer, for files small enough to keep in memory
+    public ByteBuffer readDirect(String storageKey) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(backend.size(storageKey)));
+        try (ReadableByteChannel channel = Channels.newChannel(backend.open(storageKey))) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of " + storageKey);
+                }
+            }
+        }
+        return buffer.flip();
+    }
+
+    // The original bytes, decompressing blobs that are compressed at rest
+    public InputStream openDecoded(String storageKey, String encoding) throws IOException {
+        InputStream in = backend.open(storageKey);
+        return Compression.GZIP.equals(encoding) ? new GZIPInputStream(in, 64 * 1024) : in;
+    }
+
+    public void transferTo(String storageKey, long position, long count, WritableByteChannel target) throws IOException {
+        backend.transferTo(storageKey, position, count, target);
+    }
+
+    public void delete(String storageKey) throws IOException {
+        backend.delete(storageKey);
+        hotFileCache.invalidate(storageKey);
+    }
+
+    // The client's file name only makes keys easier to recognise; it is reduced to its last path element and
+    // a safe character set, keeping the end so the extension survives the length cap
+    static String newStorageKey(String originalFilename) {
+        String name = originalFilename == null ? "" : originalFilename;
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1)
+                .replaceAll("[^A-Za-z0-9._-]", "_");
+        if (name.length() > MAX_KEY_NAME_LENGTH) {
+            name = name.substring(name.length() - MAX_KEY_NAME_LENGTH);
+        }
+        return UUID.randomUUID() + "_" + name;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.file.system.springboot.service;
+
+public record StoredObject(String storageKey, String digest, long size, String encoding) {
+}
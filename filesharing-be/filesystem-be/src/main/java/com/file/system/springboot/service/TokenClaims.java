@@ -0,0 +1,7 @@
+package com.file.system.springboot.service;
+
+import java.time.Instant;
+
+// What a verified access token says; jti identifies the token for revocation
+public record TokenClaims(Long userId, Instant expiresAt, String jti) {
+}
@@ -0,0 +1,76 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.RevokedToken;
+import com.file.system.springboot.repository.RevokedTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Ids of revoked tokens that have not expired yet, kept in memory so a request never has to ask the
+// database. Revocations are written to revoked_tokens and every replica picks up the others' on its next
+// refresh; the list stays small because entries leave it as soon as their token would have expired anyway.
+@Component
+public class TokenRevocationList implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationList.class);
+    // Re-reads a little of what was already seen, for rows committed late or stamped by a clock running behind
+    private static final Duration OVERLAP = Duration.ofMinutes(1);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+    private volatile Instant refreshedUntil = Instant.EPOCH;
+
+    public TokenRevocationList(RevokedTokenRepository revokedTokenRepository) {
+        this.revokedTokenRepository = revokedTokenRepository;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        refresh();
+    }
+
+    public boolean isRevoked(String jti) {
+        return revoked.containsKey(jti);
+    }
+
+    @Transactional
+    public void revoke(TokenClaims claims) {
+        Instant now = Instant.now();
+        revoked.put(claims.jti(), claims.expiresAt());
+        if (!revokedTokenRepository.existsById(claims.jti())) {
+            RevokedToken token = new RevokedToken();
+            token.setJti(claims.jti());
+            token.setExpiresAt(claims.expiresAt());
+            token.setRevokedAt(now);
+            revokedTokenRepository.save(token);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.auth.token.revocation-refresh:10s}")
+    public void refresh() {
+        Instant now = Instant.now();
+        try {
+            for (RevokedToken token : revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(refreshedUntil.minus(OVERLAP), now)) {
+                revoked.put(token.getJti(), token.getExpiresAt());
+            }
+            refreshedUntil = now;
+        } catch (DataAccessException e) {
+            log.warn("Could not refresh revoked tokens", e);
+        }
+        revoked.values().removeIf(expiresAt -> expiresAt.isBefore(now));
+    }
+
+    @Scheduled(cron = "${app.auth.token.revocation-purge-cron:0 17 * * * *}")
+    @Transactional
+    public void purgeExpired() {
+        revokedTokenRepository.deleteExpired(Instant.now());
+    }
+}
@@ -1,44 +1,127 @@
 package com.file.system.springboot.service;
 
 import com.file.system.springboot.model.User;
-import com.file.system.springboot.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
+// Self-contained access tokens, "<kid>.<userId>.<expiresAt>.<jti>.<signature>", signed with HMAC-SHA256.
+// Any replica holding the keys can verify them without shared state; only revoked ids are looked up, in
+// memory. app.auth.token.keys lists "kid:base64-secret" pairs: the first one signs new tokens, the others
+// are only accepted, so a key is rotated by putting a new one in front and dropping the old one once the
+// tokens it signed have expired.
 @Service
 public class TokenService {
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_BYTES = 32;
 
-    private final UserRepository userRepository;
-    private final Map<String, Long> tokenToUserId = new ConcurrentHashMap<>();
+    private final PrincipalCache principalCache;
+    private final TokenRevocationList revocationList;
+    private final Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+    private final String signingKeyId;
+    private final Duration ttl;
+    private final SecureRandom random = new SecureRandom();
 
-    public TokenService(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    public TokenService(PrincipalCache principalCache,
+                        TokenRevocationList revocationList,
+                        @Value("${app.auth.token.keys:}") String keys,
+                        @Value("${app.auth.token.ttl:24h}") Duration ttl) {
+        this.principalCache = principalCache;
+        this.revocationList = revocationList;
+        this.ttl = ttl;
+        for (String entry : keys.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":", 2);
+            byte[] secret = parts.length == 2 ? Base64.getDecoder().decode(parts[1].trim()) : new byte[0];
+            if (parts[0].isBlank() || parts[0].contains(".") || secret.length < MIN_KEY_BYTES) {
+                throw new IllegalArgumentException("app.auth.token.keys entries must be kid:base64-secret with at least "
+                        + MIN_KEY_BYTES + " bytes of secret");
+            }
+            this.keys.put(parts[0].trim(), new SecretKeySpec(secret, ALGORITHM));
+        }
+        if (this.keys.isEmpty()) {
+            log.warn("app.auth.token.keys is not set; using a random key, so tokens are only valid on this "
+                    + "instance until it restarts");
+            byte[] secret = new byte[MIN_KEY_BYTES];
+            random.nextBytes(secret);
+            this.keys.put("local", new SecretKeySpec(secret, ALGORITHM));
+        }
+        this.signingKeyId = this.keys.keySet().iterator().next();
     }
 
     public String issueToken(User user) {
-        String token = UUID.randomUUID().toString();
-        tokenToUserId.put(token, user.getId());
-        return token;
+        byte[] id = new byte[16];
+        random.nextBytes(id);
+        String jti = Base64.getUrlEncoder().withoutPadding().encodeToString(id);
+        long expiresAt = Instant.now().plus(ttl).getEpochSecond();
+        String payload = signingKeyId + "." + user.getId() + "." + expiresAt + "." + jti;
+        return payload + "." + sign(keys.get(signingKeyId), payload);
     }
 
-    public Optional<User> validate(String token) {
+    public Optional<AuthenticatedUser> authenticate(String token) {
+        return verify(token).flatMap(claims -> principalCache.get(claims.userId()));
+    }
+
+    // Signature, expiry and revocation; no database access
+    public Optional<TokenClaims> verify(String token) {
         if (token == null || token.isBlank()) {
             return Optional.empty();
         }
-        Long userId = tokenToUserId.get(token);
-        if (userId == null) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 5) {
             return Optional.empty();
         }
-        return userRepository.findById(userId);
+        SecretKeySpec key = keys.get(parts[0]);
+        if (key == null) {
+            return Optional.empty();
+        }
+        String payload = token.substring(0, token.lastIndexOf('.'));
+        byte[] expected = sign(key, payload).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, parts[4].getBytes(StandardCharsets.US_ASCII))) {
+            return Optional.empty();
+        }
+        TokenClaims claims;
+        try {
+            claims = new TokenClaims(Long.parseLong(parts[1]), Instant.ofEpochSecond(Long.parseLong(parts[2])), parts[3]);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+        if (!claims.expiresAt().isAfter(Instant.now()) || revocationList.isRevoked(claims.jti())) {
+            return Optional.empty();
+        }
+        return Optional.of(claims);
     }
 
+    // Ignores tokens that are not valid anyway
     public void revoke(String token) {
-        tokenToUserId.remove(token);
+        verify(token).ifPresent(revocationList::revoke);
     }
-}
-
 
+    private static String sign(SecretKeySpec key, String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
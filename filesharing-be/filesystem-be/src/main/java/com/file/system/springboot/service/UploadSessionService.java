@@ -0,0 +1,200 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.FileItem;
+import com.file.system.springboot.model.UploadChunk;
+import com.file.system.springboot.model.UploadSession;
+import com.file.system.springboot.repository.FolderRepository;
+import com.file.system.springboot.repository.UploadChunkRepository;
+import com.file.system.springboot.repository.UploadSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+public class UploadSessionService {
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionService.class);
+    private static final int SWEEP_BATCH_SIZE = 100;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadChunkRepository uploadChunkRepository;
+    private final FolderRepository folderRepository;
+    private final StorageService storageService;
+    private final FileService fileService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration sessionTtl;
+
+    public UploadSessionService(UploadSessionRepository uploadSessionRepository,
+                                UploadChunkRepository uploadChunkRepository,
+                                FolderRepository folderRepository,
+                                StorageService storageService,
+                                FileService fileService,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.upload.chunk-size:8MB}") DataSize chunkSize,
+                                @Value("${app.upload.session-ttl:24h}") Duration sessionTtl) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadChunkRepository = uploadChunkRepository;
+        this.folderRepository = folderRepository;
+        this.storageService = storageService;
+        this.fileService = fileService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.toIntExact(chunkSize.toBytes());
+        this.sessionTtl = sessionTtl;
+    }
+
+    @Transactional
+    public UploadSession create(String fileName, long size, String mimeType, Long folderId, Long ownerId) throws IOException {
+        if (fileName == null || fileName.isBlank()) {
+            throw new IllegalArgumentException("File name is required");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("File size must not be negative");
+        }
+        if (folderId != null && folderRepository.findByIdAndOwnerId(folderId, ownerId).isEmpty()) {
+            throw new IllegalArgumentException("Folder not found");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setOwnerId(ownerId);
+        session.setFolderId(folderId);
+        session.setFileName(fileName);
+        session.setMimeType(Optional.ofNullable(mimeType).orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE));
+        session.setSize(size);
+        session.setChunkSize(chunkSize);
+        MultipartUpload upload = storageService.beginUpload(fileName);
+        session.setStorageKey(upload.storageKey());
+        session.setBackendUploadId(upload.uploadId());
+        return uploadSessionRepository.save(session);
+    }
+
+    public Optional<UploadSession> getSession(String uploadId, Long ownerId) {
+        return uploadSessionRepository.findByIdAndOwnerId(uploadId, ownerId);
+    }
+
+    // Deliberately not transactional: the chunk is written straight to the storage backend as a part
+    // and only recorded once it is fully stored, so no connection is held during the transfer
+    public void writeChunk(String uploadId, Long ownerId, int index, InputStream in, long contentLength) throws IOException {
+        UploadSession session = uploadSessionRepository.findByIdAndOwnerId(uploadId, ownerId)
+                .orElseThrow(() -> new IllegalArgumentException("Upload not found"));
+
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new IllegalArgumentException("Chunk index out of range");
+        }
+        long offset = (long) index * session.getChunkSize();
+        long expected = Math.min(session.getChunkSize(), session.getSize() - offset);
+        if (contentLength != expected) {
+            throw new IllegalArgumentException("Chunk " + index + " must be " + expected + " bytes");
+        }
+
+        // Before the transfer, so a slow chunk cannot make the session look abandoned
+        transactionTemplate.executeWithoutResult(status -> uploadSessionRepository.touch(uploadId, Instant.now()));
+        storageService.writePart(toUpload(session), index, offset, in, expected);
+
+        if (!uploadChunkRepository.existsByUploadIdAndChunkIndex(uploadId, index)) {
+            UploadChunk chunk = new UploadChunk();
+            chunk.setUploadId(uploadId);
+            chunk.setChunkIndex(index);
+            try {
+                uploadChunkRepository.save(chunk);
+            } catch (DataIntegrityViolationException e) {
+                // A retried chunk raced with the original; the bytes are identical either way
+            }
+        }
+    }
+
+    public List<Integer> getReceivedChunks(String uploadId) {
+        return uploadChunkRepository.findChunkIndexes(uploadId);
+    }
+
+    // Length of the contiguous prefix of the file that has been received
+    public long getCommittedOffset(UploadSession session, List<Integer> receivedChunks) {
+        int contiguous = 0;
+        for (int index : receivedChunks) {
+            if (index != contiguous) {
+                break;
+            }
+            contiguous++;
+        }
+        return Math.min((long) contiguous * session.getChunkSize(), session.getSize());
+    }
+
+    // The assembled file is read in full to hash it, before the transaction that only registers it
+    public FileItem complete(String uploadId, Long ownerId) throws IOException {
+        UploadSession session = uploadSessionRepository.findByIdAndOwnerId(uploadId, ownerId)
+                .orElseThrow(() -> new IllegalArgumentException("Upload not found"));
+
+        long received = uploadChunkRepository.countByUploadId(uploadId);
+        if (received < session.getChunkCount()) {
+            throw new IllegalArgumentException("Upload is missing " + (session.getChunkCount() - received) + " chunks");
+        }
+
+        StoredObject assembled = storageService.completeUpload(toUpload(session));
+        FileItem item = transactionTemplate.execute(status -> {
+            FileItem registered = fileService.register(storageService.register(assembled), session.getFileName(),
+                    session.getMimeType(), session.getFolderId(), ownerId);
+            uploadChunkRepository.deleteByUploadId(uploadId);
+            uploadSessionRepository.delete(session);
+            return registered;
+        });
+        // The same content was already stored; on failure the session keeps the assembled file for a retry
+        storageService.discard(assembled, item.getStorageKey());
+        return item;
+    }
+
+    @Transactional
+    public void abort(String uploadId, Long ownerId) throws IOException {
+        UploadSession session = uploadSessionRepository.findByIdAndOwnerId(uploadId, ownerId)
+                .orElseThrow(() -> new IllegalArgumentException("Upload not found"));
+        storageService.abortUpload(toUpload(session));
+        uploadChunkRepository.deleteByUploadId(uploadId);
+        uploadSessionRepository.delete(session);
+    }
+
+    // Gives up on uploads that have not received a chunk for the ttl, with whatever was stored for them
+    @Scheduled(fixedDelayString = "${app.upload.sweep-interval:1h}", initialDelayString = "${app.upload.sweep-interval:1h}")
+    public void expireAbandoned() {
+        Instant cutoff = Instant.now().minus(sessionTtl);
+        List<UploadSession> abandoned;
+        do {
+            abandoned = uploadSessionRepository.findAbandoned(cutoff, Limit.of(SWEEP_BATCH_SIZE));
+            abandoned.forEach(this::expire);
+        } while (abandoned.size() == SWEEP_BATCH_SIZE);
+    }
+
+    private void expire(UploadSession session) {
+        try {
+            storageService.abortUpload(toUpload(session));
+        } catch (IOException | RuntimeException e) {
+            // Possibly aborted by another replica already; anything left behind is unreferenced once the row
+            // is gone, and StorageReconciler removes it
+            log.warn("Could not abort expired upload {}", session.getId(), e);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            uploadChunkRepository.deleteByUploadId(session.getId());
+            uploadSessionRepository.deleteById(session.getId());
+        });
+        log.info("Expired upload {} of {}", session.getId(), session.getFileName());
+    }
+
+    private MultipartUpload toUpload(UploadSession session) {
+        return new MultipartUpload(session.getStorageKey(), session.getBackendUploadId());
+    }
+}
@@ -0,0 +1,37 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Evicts changed users from the PrincipalCache. Evicted again after commit, since a request running
+// in between can still load the old row. Bulk JPQL updates bypass entity listeners.
+public class UserChangeListener {
+
+    // Hibernate creates listeners while building the EntityManagerFactory, before the repositories
+    // the cache depends on exist
+    private final ObjectProvider<PrincipalCache> principalCache;
+
+    public UserChangeListener(ObjectProvider<PrincipalCache> principalCache) {
+        this.principalCache = principalCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void userChanged(User user) {
+        Long userId = user.getId();
+        PrincipalCache principalCache = this.principalCache.getObject();
+        principalCache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    principalCache.invalidate(userId);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.file.system.springboot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultipartSizeFilterTests {
+
+	private final MultipartSizeFilter filter = new MultipartSizeFilter("/api/files/batch", DataSize.ofBytes(100));
+
+	@Test
+	void holdsMultipartRequestsToTheirLimitOutsideTheBatchEndpoint() throws Exception {
+		assertThat(status(multipart("/api/files", 100))).isEqualTo(200);
+		assertThat(status(multipart("/api/files", 101))).isEqualTo(413);
+		assertThat(status(multipart("/api/files/batch", 10_000))).isEqualTo(200);
+	}
+
+	@Test
+	void refusesMultipartRequestsWithoutALength() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/files");
+		request.setContentType("multipart/form-data; boundary=x");
+
+		assertThat(status(request)).isEqualTo(411);
+	}
+
+	@Test
+	void ignoresOtherRequests() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/files/stream");
+		request.setContentType("application/octet-stream");
+		request.setContent(new byte[1000]);
+
+		assertThat(status(request)).isEqualTo(200);
+	}
+
+	private static MockHttpServletRequest multipart(String uri, int length) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+		request.setContentType("multipart/form-data; boundary=x");
+		request.setContent(new byte[length]);
+		return request;
+	}
+
+	private int status(MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		filter.doFilter(request, response, chain);
+		return chain.getRequest() != null ? 200 : response.getStatus();
+	}
+}
@@ -0,0 +1,111 @@
+package com.file.system.springboot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.file.system.springboot.model.PasshareSession;
+import com.file.system.springboot.model.PasshareSessionParticipant;
+import com.file.system.springboot.model.SessionChange;
+import com.file.system.springboot.repository.PasshareSessionFileRepository;
+import com.file.system.springboot.repository.PasshareSessionParticipantRepository;
+import com.file.system.springboot.repository.PasshareSessionRepository;
+import com.file.system.springboot.repository.SessionChangeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ActiveSessionRegistryTests {
+
+	private PasshareSessionRepository sessionRepository;
+	private PasshareSessionParticipantRepository participantRepository;
+	private PasshareSessionFileRepository sessionFileRepository;
+
+	@BeforeEach
+	void setUp() {
+		sessionRepository = mock(PasshareSessionRepository.class);
+		participantRepository = mock(PasshareSessionParticipantRepository.class);
+		sessionFileRepository = mock(PasshareSessionFileRepository.class);
+
+		PasshareSession session = new PasshareSession();
+		session.setId(1L);
+		session.setCreatorId(10L);
+		session.setExpiresAt(Instant.now().plusSeconds(3600));
+		PasshareSessionParticipant creator = new PasshareSessionParticipant();
+		creator.setUserId(10L);
+		when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
+		when(participantRepository.findBySessionId(1L)).thenReturn(List.of(creator));
+	}
+
+	@Test
+	void answersFromMemoryAndFollowsLocalChanges() {
+		ActiveSessionRegistry registry = registry();
+
+		assertThat(registry.find(1L)).get().matches(s -> s.hasParticipant(10L) && !s.hasParticipant(20L));
+		registry.onSessionEvent(new SessionEvent(1L, SessionEvent.PARTICIPANT_JOINED, Map.of("userId", 20L)));
+		registry.onSessionEvent(new SessionEvent(1L, SessionEvent.FILE_SHARED,
+				Map.of("id", 5L, "fileId", 50L, "sharedByUserId", 20L)));
+
+		ActiveSessionRegistry.ActiveSession session = registry.find(1L).orElseThrow();
+		assertThat(session.hasParticipant(20L)).isTrue();
+		assertThat(session.files()).containsEntry(5L, new ActiveSessionRegistry.SharedFile(50L, 20L));
+
+		registry.onSessionEvent(new SessionEvent(1L, SessionEvent.PARTICIPANT_LEFT, Map.of("userId", 20L)));
+		registry.onSessionEvent(new SessionEvent(1L, SessionEvent.FILE_REMOVED, Map.of("id", 5L)));
+		session = registry.find(1L).orElseThrow();
+		assertThat(session.hasParticipant(20L)).isFalse();
+		assertThat(session.files()).isEmpty();
+		verify(sessionRepository, times(1)).findById(1L);
+
+		registry.onSessionEvent(new SessionEvent(1L, SessionEvent.SESSION_ENDED, Map.of()));
+		registry.find(1L);
+		verify(sessionRepository, times(2)).findById(1L);
+	}
+
+	@Test
+	void picksUpChangesMadeOnAnotherReplica() {
+		ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+		SessionChangeRepository sharedTable = mock(SessionChangeRepository.class);
+		ActiveSessionRegistry registryB = registry();
+		List<Object> publishedOnA = new ArrayList<>();
+		List<Object> publishedOnB = new ArrayList<>();
+		SessionChangeFeed feedA = new SessionChangeFeed(sharedTable, publishedOnA::add, objectMapper,
+				Duration.ofSeconds(30), Duration.ofHours(1));
+		SessionChangeFeed feedB = new SessionChangeFeed(sharedTable, event -> {
+			publishedOnB.add(event);
+			registryB.onSessionEvent((SessionEvent) event);
+		}, objectMapper, Duration.ofSeconds(30), Duration.ofHours(1));
+		assertThat(registryB.find(1L).orElseThrow().hasParticipant(20L)).isFalse();
+		feedA.poll();
+		feedB.poll();
+
+		feedA.record(new SessionEvent(1L, SessionEvent.PARTICIPANT_JOINED, Map.of("userId", 20L, "joinedAt", Instant.now())));
+		ArgumentCaptor<SessionChange> written = ArgumentCaptor.forClass(SessionChange.class);
+		verify(sharedTable).save(written.capture());
+		written.getValue().setId(1L);
+		when(sharedTable.findByCreatedAtAfterOrderById(any())).thenReturn(List.of(written.getValue()));
+		feedA.poll();
+		feedB.poll();
+		feedB.poll();
+
+		assertThat(registryB.find(1L).orElseThrow().hasParticipant(20L)).isTrue();
+		verify(sessionRepository, times(1)).findById(1L);
+		assertThat(publishedOnA).isEmpty();
+		assertThat(publishedOnB).hasSize(1);
+	}
+
+	private ActiveSessionRegistry registry() {
+		return new ActiveSessionRegistry(sessionRepository, participantRepository, sessionFileRepository,
+				new SimpleMeterRegistry(), 100, Duration.ofMinutes(10));
+	}
+}
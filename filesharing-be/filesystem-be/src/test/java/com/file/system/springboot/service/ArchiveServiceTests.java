@@ -0,0 +1,117 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.Folder;
+import com.file.system.springboot.repository.ArchiveEntry;
+import com.file.system.springboot.repository.FileItemRepository;
+import com.file.system.springboot.repository.FolderNode;
+import com.file.system.springboot.repository.FolderRepository;
+import com.file.system.springboot.repository.StorageBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class ArchiveServiceTests {
+
+	@TempDir
+	Path storageRoot;
+
+	private FolderRepository folderRepository;
+	private FileItemRepository fileItemRepository;
+	private StorageService storageService;
+	private ArchiveService archiveService;
+	private Folder root;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		folderRepository = mock(FolderRepository.class);
+		fileItemRepository = mock(FileItemRepository.class);
+		storageService = new StorageService(new LocalStorageBackend(storageRoot.toString(), false), false, false, 0.8,
+				mock(StorageBlobRepository.class), new HotFileCache(false, DataSize.ofMegabytes(1),
+						DataSize.ofKilobytes(64), 3, Duration.ofMinutes(10), new SimpleMeterRegistry()));
+		archiveService = new ArchiveService(folderRepository, fileItemRepository, storageService);
+
+		root = new Folder();
+		root.setId(1L);
+		root.setName("Photos");
+		root.setOwnerId(7L);
+		root.setPath("/1/");
+	}
+
+	@Test
+	void duplicateNamesGetNumberedAndNamesStayInsideTheirFolder() throws Exception {
+		when(folderRepository.findSubtreeNodes(7L, "/1/")).thenReturn(List.of(
+				new FolderNode(1L, null, "Photos"),
+				new FolderNode(2L, 1L, "trip"),
+				new FolderNode(3L, 1L, "trip"),
+				new FolderNode(4L, 2L, "../etc")));
+		when(fileItemRepository.findArchiveEntries(eq(7L), anyCollection())).thenReturn(List.of(
+				entry(1L, "a.txt", "first"),
+				entry(1L, "a.txt", "second"),
+				entry(1L, "trip", "not a folder"),
+				entry(2L, "a.txt", "in trip"),
+				entry(4L, "..", "dots")));
+
+		Map<String, String> zip = unzip(archive());
+
+		assertThat(zip).containsExactly(
+				Map.entry("Photos/", ""),
+				Map.entry("Photos/trip/", ""),
+				Map.entry("Photos/trip (1)/", ""),
+				Map.entry("Photos/trip/.._etc/", ""),
+				Map.entry("Photos/a.txt", "first"),
+				Map.entry("Photos/a (1).txt", "second"),
+				Map.entry("Photos/trip (2)", "not a folder"),
+				Map.entry("Photos/trip/a.txt", "in trip"),
+				Map.entry("Photos/trip/.._etc/_", "dots"));
+	}
+
+	@Test
+	void leavesOutFilesWhoseContentIsMissing() throws Exception {
+		when(folderRepository.findSubtreeNodes(7L, "/1/")).thenReturn(List.of(new FolderNode(1L, null, "Photos")));
+		when(fileItemRepository.findArchiveEntries(eq(7L), anyCollection())).thenReturn(List.of(
+				new ArchiveEntry(1L, "gone.txt", "missing-key", "text/plain", null, null),
+				entry(1L, "kept.txt", "kept")));
+
+		assertThat(unzip(archive())).containsExactly(
+				Map.entry("Photos/", ""),
+				Map.entry("Photos/kept.txt", "kept"));
+	}
+
+	private ArchiveEntry entry(Long folderId, String name, String content) throws Exception {
+		StagedObject staged = storageService.stage(new ByteArrayInputStream(content.getBytes()), name, "text/plain");
+		String storageKey = storageService.store(staged).storageKey();
+		return new ArchiveEntry(folderId, name, storageKey, "text/plain", null, null);
+	}
+
+	private byte[] archive() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		archiveService.write(root, out);
+		return out.toByteArray();
+	}
+
+	private static Map<String, String> unzip(byte[] archive) throws Exception {
+		Map<String, String> entries = new LinkedHashMap<>();
+		try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+			for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+				entries.put(entry.getName(), new String(zip.readAllBytes()));
+			}
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,72 @@
+package com.file.system.springboot.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class DownloadCounterTests {
+
+	private JdbcTemplate jdbcTemplate;
+	private DownloadCounter downloadCounter;
+
+	@BeforeEach
+	void setUp() {
+		jdbcTemplate = mock(JdbcTemplate.class);
+		downloadCounter = new DownloadCounter(jdbcTemplate, mock(PlatformTransactionManager.class));
+	}
+
+	@Test
+	void flushesConcurrentDownloadsAsOneBatchedIncrementPerRow() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 10_000; i++) {
+			long id = i % 2 == 0 ? 7L : 3L;
+			executor.execute(() -> downloadCounter.recordFileDownload(id));
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+		downloadCounter.recordSessionFileDownload(11L);
+
+		downloadCounter.flush();
+
+		assertThat(fileBatch()).containsExactly(List.of(5000L, 3L), List.of(5000L, 7L));
+		verify(jdbcTemplate).batchUpdate(startsWith("UPDATE passhare_session_files"), anyList());
+
+		clearInvocations(jdbcTemplate);
+		downloadCounter.flush();
+		verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+	}
+
+	@Test
+	void keepsCountsOfAFailedFlushForTheNextOne() {
+		downloadCounter.recordFileDownload(5L);
+		when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new QueryTimeoutException("timeout"));
+		downloadCounter.flush();
+
+		reset(jdbcTemplate);
+		downloadCounter.recordFileDownload(5L);
+		downloadCounter.flush();
+
+		assertThat(fileBatch()).containsExactly(List.of(2L, 5L));
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<List<Object>> fileBatch() {
+		ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+		verify(jdbcTemplate).batchUpdate(startsWith("UPDATE file_items"), args.capture());
+		return args.getValue().stream().map(List::of).toList();
+	}
+}
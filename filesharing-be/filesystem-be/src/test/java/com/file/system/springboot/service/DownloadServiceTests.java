@@ -0,0 +1,168 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.FileItem;
+import com.file.system.springboot.repository.StorageBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class DownloadServiceTests {
+
+	@TempDir
+	Path storageRoot;
+
+	private DownloadService downloadService;
+	private FileItem item;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		HotFileCache hotFileCache = new HotFileCache(false, DataSize.ofMegabytes(1), DataSize.ofKilobytes(64), 3, Duration.ofMinutes(10), new SimpleMeterRegistry());
+		StorageService storageService = new StorageService(new LocalStorageBackend(storageRoot.toString(), false), false, false, 0.8, mock(StorageBlobRepository.class), hotFileCache);
+		downloadService = new DownloadService(storageService, hotFileCache);
+		Files.writeString(storageRoot.resolve("key_file.txt"), "0123456789abcdefghij", StandardCharsets.US_ASCII);
+
+		item = new FileItem();
+		item.setName("file.txt");
+		item.setMimeType("text/plain");
+		item.setStorageKey("key_file.txt");
+		item.setUploadedAt(Instant.parse("2026-01-01T00:00:00Z"));
+	}
+
+	@Test
+	void sendsWholeFileWithoutRange() throws Exception {
+		MockHttpServletResponse response = send(new MockHttpServletRequest());
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+		assertThat(response.getContentAsString()).isEqualTo("0123456789abcdefghij");
+	}
+
+	@Test
+	void sendsSingleRange() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Range", "bytes=5-9");
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 5-9/20");
+		assertThat(response.getContentAsString()).isEqualTo("56789");
+		assertThat(downloadService.countsAsDownload(request)).isFalse();
+	}
+
+	@Test
+	void sendsMultipleRangesAsMultipart() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Range", "bytes=0-1,-2");
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getContentType()).startsWith("multipart/byteranges; boundary=");
+		String body = response.getContentAsString();
+		assertThat(body).contains("Content-Range: bytes 0-1/20\r\n\r\n01")
+				.contains("Content-Range: bytes 18-19/20\r\n\r\nij");
+		assertThat((long) body.length()).isEqualTo(response.getContentLengthLong());
+	}
+
+	@Test
+	void rejectsUnsatisfiableRange() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Range", "bytes=50-60");
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getStatus()).isEqualTo(416);
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */20");
+	}
+
+	@Test
+	void ignoresRangeWhenIfRangeDoesNotMatch() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Range", "bytes=5-9");
+		request.addHeader("If-Range", "\"stale\"");
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getContentAsString()).hasSize(20);
+	}
+
+	@Test
+	void cachesFilesOnlyAfterRepeatedRequestsAndServesRangesFromThemUntilDeleted() throws Exception {
+		HotFileCache hotFileCache = new HotFileCache(true, DataSize.ofMegabytes(1), DataSize.ofKilobytes(64), 2, Duration.ofMinutes(10), new SimpleMeterRegistry());
+		StorageService storageService = new StorageService(new LocalStorageBackend(storageRoot.toString(), false), false, false, 0.8, mock(StorageBlobRepository.class), hotFileCache);
+		downloadService = new DownloadService(storageService, hotFileCache);
+		send(new MockHttpServletRequest());
+
+		// Read from storage the first time
+		Files.writeString(storageRoot.resolve("key_file.txt"), "changed on disk once", StandardCharsets.US_ASCII);
+		assertThat(send(new MockHttpServletRequest()).getContentAsString()).isEqualTo("changed on disk once");
+
+		// Cached by the second request
+		Files.writeString(storageRoot.resolve("key_file.txt"), "changed on disk only", StandardCharsets.US_ASCII);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Range", "bytes=0-1,-2");
+		String body = send(request).getContentAsString();
+		assertThat(body).contains("bytes 0-1/20\r\n\r\nch").contains("bytes 18-19/20\r\n\r\nce");
+
+		storageService.delete("key_file.txt");
+		Files.writeString(storageRoot.resolve("key_file.txt"), "0123456789abcdefghij", StandardCharsets.US_ASCII);
+		assertThat(send(new MockHttpServletRequest()).getContentAsString()).isEqualTo("0123456789abcdefghij");
+	}
+
+	@Test
+	void negotiatesGzipForBlobsCompressedAtRestWithoutRanges() throws Exception {
+		String text = "line of text\n".repeat(200);
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+			out.write(text.getBytes(StandardCharsets.US_ASCII));
+		}
+		Files.write(storageRoot.resolve("key_notes.txt"), gzipped.toByteArray());
+		item.setStorageKey("key_notes.txt");
+		item.setContentEncoding("gzip");
+		item.setSize(text.length());
+
+		MockHttpServletRequest accepting = new MockHttpServletRequest();
+		accepting.addHeader("Accept-Encoding", "br, gzip;q=0.5");
+		accepting.addHeader("Range", "bytes=0-9");
+		MockHttpServletResponse encoded = send(accepting);
+
+		assertThat(encoded.getStatus()).isEqualTo(200);
+		assertThat(encoded.getHeader("Content-Encoding")).isEqualTo("gzip");
+		assertThat(encoded.getHeader("Accept-Ranges")).isEqualTo("none");
+		assertThat(encoded.getHeader("Vary")).isEqualTo("Accept-Encoding");
+		assertThat(encoded.getContentAsByteArray()).isEqualTo(gzipped.toByteArray());
+		assertThat(encoded.getContentLengthLong()).isEqualTo(gzipped.size());
+
+		MockHttpServletRequest refusing = new MockHttpServletRequest();
+		refusing.addHeader("Accept-Encoding", "gzip;q=0, *");
+		refusing.addHeader("Range", "bytes=0-9");
+		MockHttpServletResponse decoded = send(refusing);
+
+		assertThat(decoded.getStatus()).isEqualTo(200);
+		assertThat(decoded.getHeader("Content-Encoding")).isNull();
+		assertThat(decoded.getHeader("Accept-Ranges")).isEqualTo("none");
+		assertThat(decoded.getContentAsString()).isEqualTo(text);
+		assertThat(decoded.getContentLengthLong()).isEqualTo(text.length());
+		assertThat(decoded.getHeader("ETag")).isNotEqualTo(encoded.getHeader("ETag"));
+		assertThat(send(new MockHttpServletRequest()).getContentAsString()).isEqualTo(text);
+	}
+
+	private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		downloadService.send(item, request, response);
+		return response;
+	}
+}
@@ -0,0 +1,43 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.FileItem;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class FileItemSequenceSeederTests {
+
+	@Test
+	void movesTheSequencePastExistingIdsOnMySql() {
+		JdbcTemplate jdbcTemplate = database("MySQL");
+
+		new FileItemSequenceSeeder(jdbcTemplate).afterSingletonsInstantiated();
+
+		verify(jdbcTemplate).update(contains("INSERT INTO file_items_seq"), eq(FileItem.ID_ALLOCATION_SIZE));
+		verify(jdbcTemplate).update(contains("UPDATE file_items_seq"),
+				eq(FileItem.ID_ALLOCATION_SIZE), eq(FileItem.ID_ALLOCATION_SIZE));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void leavesOtherDatabasesAlone() {
+		JdbcTemplate jdbcTemplate = database("H2");
+
+		new FileItemSequenceSeeder(jdbcTemplate).afterSingletonsInstantiated();
+
+		verify(jdbcTemplate).execute(any(ConnectionCallback.class));
+		verifyNoMoreInteractions(jdbcTemplate);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JdbcTemplate database(String productName) {
+		JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+		when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn(productName);
+		return jdbcTemplate;
+	}
+}
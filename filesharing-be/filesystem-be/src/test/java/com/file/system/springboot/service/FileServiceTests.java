@@ -0,0 +1,246 @@
+package com.file.system.springboot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.file.system.springboot.controller.FileController;
+import com.file.system.springboot.model.FileItem;
+import com.file.system.springboot.model.StorageBlob;
+import com.file.system.springboot.repository.FileItemRepository;
+import com.file.system.springboot.repository.FolderRepository;
+import com.file.system.springboot.repository.StorageBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class FileServiceTests {
+
+	private static final String DIGEST = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+	@TempDir
+	Path storageRoot;
+
+	private FileItemRepository fileItemRepository;
+	private StorageBlobRepository storageBlobRepository;
+	private StorageService storageService;
+	private HotFileCache hotFileCache;
+	private FileService fileService;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		fileItemRepository = mock(FileItemRepository.class);
+		storageBlobRepository = mock(StorageBlobRepository.class);
+		hotFileCache = new HotFileCache(false, DataSize.ofMegabytes(1), DataSize.ofKilobytes(64), 3, Duration.ofMinutes(10), new SimpleMeterRegistry());
+		storageService = new StorageService(new LocalStorageBackend(storageRoot.toString(), false), true, false, 0.8,
+				storageBlobRepository, hotFileCache);
+		fileService = new FileService(fileItemRepository, mock(FolderRepository.class), storageService,
+				mock(DownloadCounter.class), mock(PlatformTransactionManager.class), 500, 4);
+		when(fileItemRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+		StorageBlob blob = new StorageBlob();
+		blob.setStorageKey(DIGEST);
+		blob.setDigest(DIGEST);
+		blob.setSize(4);
+		when(storageBlobRepository.findById(DIGEST)).thenReturn(Optional.of(blob));
+		when(storageBlobRepository.addReferenceIfLive(DIGEST)).thenReturn(1);
+		FileItem own = new FileItem();
+		own.setStorageKey(DIGEST);
+		own.setDigest(DIGEST);
+		when(fileItemRepository.findFirstByOwnerIdAndDigestAndSize(7L, DIGEST, 4)).thenReturn(Optional.of(own));
+	}
+
+	@Test
+	void instantUploadReusesTheCallersOwnContent() {
+		FileItem copy = fileService.uploadByDigest(DIGEST.toUpperCase(), 4, "copy.txt", "text/plain", null, 7L).orElseThrow();
+
+		assertThat(copy.getStorageKey()).isEqualTo(DIGEST);
+		assertThat(copy.getOwnerId()).isEqualTo(7L);
+		assertThat(copy.getSize()).isEqualTo(4);
+		verify(storageBlobRepository).addReferenceIfLive(DIGEST);
+	}
+
+	@Test
+	void instantUploadNeverMatchesAnotherUsersContent() {
+		assertThat(fileService.uploadByDigest(DIGEST, 4, "copy.txt", "text/plain", null, 8L)).isEmpty();
+		assertThat(fileService.uploadByDigest(DIGEST, 5, "copy.txt", "text/plain", null, 7L)).isEmpty();
+		verify(storageBlobRepository, never()).addReferenceIfLive(anyString());
+		verify(fileItemRepository, never()).save(any());
+		assertThatThrownBy(() -> fileService.uploadByDigest("abc", 4, "copy.txt", null, null, 7L))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void instantUploadFailsOnceTheContentWasReleased() {
+		when(storageBlobRepository.addReferenceIfLive(DIGEST)).thenReturn(0);
+
+		assertThat(fileService.uploadByDigest(DIGEST, 4, "copy.txt", "text/plain", null, 7L)).isEmpty();
+		verify(fileItemRepository, never()).save(any());
+	}
+
+	@Test
+	void streamedUploadComesBackByteForByte() throws Exception {
+		byte[] body = new byte[1_000_003];
+		new Random(42).nextBytes(body);
+		when(storageBlobRepository.addReference(anyString(), anyString(), anyLong(), any(), any())).thenReturn(1);
+		FileController controller = new FileController(fileService, new DownloadService(storageService, hotFileCache));
+		MockHttpServletRequest upload = new MockHttpServletRequest("PUT", "/api/files/stream");
+		upload.setContentType("application/octet-stream");
+		upload.setContent(body);
+
+		FileItem item = controller.uploadStream(7L, "video.bin", null, upload);
+
+		assertThat(item.getSize()).isEqualTo(body.length);
+		assertThat(item.getDigest()).isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body)));
+		assertThat(item.getStorageKey()).endsWith("_video.bin");
+		item.setId(1L);
+		when(fileItemRepository.findByIdAndOwnerId(1L, 7L)).thenReturn(Optional.of(item));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.download(7L, 1L, new MockHttpServletRequest("GET", "/api/files/1/download"), response);
+		assertThat(response.getContentAsByteArray()).isEqualTo(body);
+		// Nothing left behind in the staging area
+		try (Stream<Path> staging = Files.list(storageRoot.resolve(".tmp"))) {
+			assertThat(staging).isEmpty();
+		}
+	}
+
+	@Test
+	void uploadOfKnownContentReferencesTheStoredBlobAndDropsItsCopy() throws Exception {
+		Optional<StorageBlob> stored = storageBlobRepository.findById(DIGEST);
+		when(storageBlobRepository.findFirstByDigestAndSize(DIGEST, 4)).thenReturn(stored);
+
+		FileItem item = fileService.upload(new ByteArrayInputStream("test".getBytes()), "b.txt", "text/plain", null, 8L);
+
+		assertThat(item.getStorageKey()).isEqualTo(DIGEST);
+		verify(storageBlobRepository).addReferenceIfLive(DIGEST);
+		verify(storageBlobRepository, never()).addReference(anyString(), anyString(), anyLong(), any(), any());
+		assertThat(storedFiles()).isEmpty();
+	}
+
+	@Test
+	void uploadThatFailsToRegisterLeavesNoBytesBehind() throws Exception {
+		when(fileItemRepository.save(any())).thenThrow(new IllegalStateException("database down"));
+
+		assertThatThrownBy(() -> fileService.upload(new ByteArrayInputStream("other".getBytes()), "c.txt", "text/plain", null, 7L))
+				.isInstanceOf(IllegalStateException.class);
+		assertThat(storedFiles()).isEmpty();
+	}
+
+	@Test
+	void deleteRemovesTheBytesOnlyOnceTheTransactionCommits() throws Exception {
+		Files.writeString(storageRoot.resolve("key_gone.txt"), "gone");
+		FileItem item = new FileItem();
+		item.setStorageKey("key_gone.txt");
+		when(fileItemRepository.findByIdAndOwnerId(1L, 7L)).thenReturn(Optional.of(item));
+		when(storageBlobRepository.removeReference("key_gone.txt")).thenReturn(1);
+		when(storageBlobRepository.deleteIfUnreferenced("key_gone.txt")).thenReturn(1);
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			fileService.delete(1L, 7L);
+			verify(fileItemRepository).delete(item);
+			// Still there should the transaction roll back
+			assertThat(storageRoot.resolve("key_gone.txt")).exists();
+
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+			assertThat(storageRoot.resolve("key_gone.txt")).doesNotExist();
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void batchUploadKeepsTheOrderOfItsParts() throws Exception {
+		when(fileItemRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+		List<MultipartFile> parts = IntStream.range(0, 20)
+				.<MultipartFile>mapToObj(i -> new MockMultipartFile("files", "p" + i + ".txt", "text/plain", ("part " + i).getBytes()))
+				.toList();
+
+		List<FileItem> items = fileService.uploadAll(parts, null, 7L);
+
+		assertThat(items).extracting(FileItem::getName)
+				.containsExactlyElementsOf(IntStream.range(0, 20).mapToObj(i -> "p" + i + ".txt").toList());
+		verify(storageBlobRepository, times(20)).addReference(anyString(), anyString(), anyLong(), any(), any());
+		assertThat(storedFiles()).hasSize(20);
+	}
+
+	@Test
+	void batchUploadWithAnUnreadablePartStoresNothing() throws Exception {
+		MultipartFile broken = mock(MultipartFile.class);
+		when(broken.getOriginalFilename()).thenReturn("broken.txt");
+		when(broken.getInputStream()).thenThrow(new IOException("connection reset"));
+		List<MultipartFile> parts = List.of(
+				new MockMultipartFile("files", "a.txt", "text/plain", "a".getBytes()),
+				broken,
+				new MockMultipartFile("files", "b.txt", "text/plain", "b".getBytes()));
+
+		assertThatThrownBy(() -> fileService.uploadAll(parts, null, 7L)).isInstanceOf(IOException.class);
+		verify(fileItemRepository, never()).saveAll(anyList());
+		assertThat(storedFiles()).isEmpty();
+	}
+
+	@Test
+	void batchUploadThatFailsToRegisterLeavesNoBytesBehind() throws Exception {
+		when(fileItemRepository.saveAll(anyList())).thenThrow(new IllegalStateException("database down"));
+		List<MultipartFile> parts = List.of(
+				new MockMultipartFile("files", "a.txt", "text/plain", "a".getBytes()),
+				new MockMultipartFile("files", "b.txt", "text/plain", "b".getBytes()));
+
+		assertThatThrownBy(() -> fileService.uploadAll(parts, null, 7L)).isInstanceOf(IllegalStateException.class);
+		assertThat(storedFiles()).isEmpty();
+	}
+
+	@Test
+	void batchUploadRejectsEmptyAndOversizedBatches() {
+		MultipartFile part = new MockMultipartFile("files", "a.txt", "text/plain", "a".getBytes());
+
+		assertThatThrownBy(() -> fileService.uploadAll(List.of(), null, 7L)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> fileService.uploadAll(Collections.nCopies(501, part), null, 7L))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void keepsDigestAndStorageKeyOutOfTheJson() throws Exception {
+		FileItem item = new FileItem();
+		item.setName("a.txt");
+		item.setStorageKey(DIGEST);
+		item.setDigest(DIGEST);
+
+		assertThat(new ObjectMapper().findAndRegisterModules().writeValueAsString(item))
+				.contains("\"name\":\"a.txt\"").doesNotContain(DIGEST);
+	}
+
+	private List<Path> storedFiles() throws Exception {
+		try (Stream<Path> files = Files.walk(storageRoot)) {
+			return files.filter(Files::isRegularFile).toList();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.file.system.springboot.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class FolderPathBackfillTests {
+
+	@Autowired
+	DataSource dataSource;
+
+	@Test
+	void fillsMissingPathsLevelByLevel() {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		// Three levels without a path: each pass can only fill the top one still missing
+		insert(jdbcTemplate, 11, null, null);
+		insert(jdbcTemplate, 12, 11L, null);
+		insert(jdbcTemplate, 13, 12L, null);
+		insert(jdbcTemplate, 21, null, "/21/");
+		insert(jdbcTemplate, 22, 21L, null);
+
+		new FolderPathBackfill(jdbcTemplate).afterSingletonsInstantiated();
+
+		Map<Long, String> paths = new HashMap<>();
+		jdbcTemplate.query("SELECT id, path FROM folders", rs -> {
+			paths.put(rs.getLong(1), rs.getString(2));
+		});
+		assertThat(paths).containsOnly(
+				Map.entry(11L, "/11/"),
+				Map.entry(12L, "/11/12/"),
+				Map.entry(13L, "/11/12/13/"),
+				Map.entry(21L, "/21/"),
+				Map.entry(22L, "/21/22/"));
+	}
+
+	@Test
+	void doesNothingOnceEveryFolderHasAPath() {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		insert(jdbcTemplate, 31, null, "/31/");
+
+		new FolderPathBackfill(jdbcTemplate).afterSingletonsInstantiated();
+
+		assertThat(jdbcTemplate.queryForObject("SELECT path FROM folders WHERE id = 31", String.class)).isEqualTo("/31/");
+	}
+
+	private static void insert(JdbcTemplate jdbcTemplate, long id, Long parentId, String path) {
+		jdbcTemplate.update("INSERT INTO folders (id, name, created_at, parent_id, owner_id, path) "
+				+ "VALUES (?, ?, CURRENT_TIMESTAMP, ?, 1, ?)", id, "f" + id, parentId, path);
+	}
+}
@@ -0,0 +1,244 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.FileItem;
+import com.file.system.springboot.model.Folder;
+import com.file.system.springboot.model.PasshareSession;
+import com.file.system.springboot.model.PasshareSessionFile;
+import com.file.system.springboot.model.PendingBlobRelease;
+import com.file.system.springboot.model.ShareLink;
+import com.file.system.springboot.model.User;
+import com.file.system.springboot.repository.FileItemRepository;
+import com.file.system.springboot.repository.FolderRepository;
+import com.file.system.springboot.repository.PasshareSessionFileRepository;
+import com.file.system.springboot.repository.PendingBlobReleaseRepository;
+import com.file.system.springboot.repository.ShareLinkRepository;
+import com.file.system.springboot.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+class FolderServiceTests {
+
+	@Autowired
+	TestEntityManager entityManager;
+	@Autowired
+	FolderRepository folderRepository;
+	@Autowired
+	UserRepository userRepository;
+	@Autowired
+	FileItemRepository fileItemRepository;
+	@Autowired
+	ShareLinkRepository shareLinkRepository;
+	@Autowired
+	PasshareSessionFileRepository sessionFileRepository;
+	@Autowired
+	PendingBlobReleaseRepository pendingBlobReleaseRepository;
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	private FolderService folderService;
+	private Long ownerId;
+
+	@BeforeEach
+	void setUp() {
+		folderService = new FolderService(folderRepository, userRepository, fileItemRepository, shareLinkRepository,
+				sessionFileRepository, pendingBlobReleaseRepository);
+		User owner = new User();
+		owner.setEmail("owner@example.com");
+		owner.setUsername("owner");
+		owner.setPasswordHash("x");
+		ownerId = entityManager.persistAndFlush(owner).getId();
+	}
+
+	@Test
+	void pathsFollowTheParentChain() {
+		Folder a = folderService.create("a", null, ownerId);
+		Folder b = folderService.create("b", a.getId(), ownerId);
+		Folder c = folderService.create("c", b.getId(), ownerId);
+		entityManager.flush();
+		entityManager.clear();
+
+		assertThat(path(a)).isEqualTo("/" + a.getId() + "/");
+		assertThat(path(b)).isEqualTo(path(a) + b.getId() + "/");
+		assertThat(path(c)).isEqualTo(path(b) + c.getId() + "/");
+		assertThat(names(folderService.breadcrumbs(c.getId(), ownerId))).containsExactly("a", "b", "c");
+	}
+
+	@Test
+	void moveRewritesThePathsOfTheWholeSubtree() {
+		Folder a = folderService.create("a", null, ownerId);
+		Folder b = folderService.create("b", a.getId(), ownerId);
+		Folder c = folderService.create("c", b.getId(), ownerId);
+		Folder d = folderService.create("d", null, ownerId);
+		entityManager.flush();
+
+		FolderSummary moved = folderService.move(b.getId(), ownerId, d.getId());
+		entityManager.clear();
+
+		assertThat(moved.parentId()).isEqualTo(d.getId());
+		assertThat(path(b)).isEqualTo(path(d) + b.getId() + "/");
+		assertThat(path(c)).isEqualTo(path(b) + c.getId() + "/");
+		assertThat(names(folderService.subtree(d.getId(), ownerId))).containsExactly("d", "b", "c");
+		assertThat(names(folderService.subtree(a.getId(), ownerId))).containsExactly("a");
+		assertThat(names(folderService.breadcrumbs(c.getId(), ownerId))).containsExactly("d", "b", "c");
+	}
+
+	@Test
+	void moveToTheRootAndBack() {
+		Folder a = folderService.create("a", null, ownerId);
+		Folder b = folderService.create("b", a.getId(), ownerId);
+		entityManager.flush();
+
+		folderService.move(b.getId(), ownerId, null);
+		entityManager.clear();
+		assertThat(path(b)).isEqualTo("/" + b.getId() + "/");
+
+		folderService.move(b.getId(), ownerId, a.getId());
+		entityManager.clear();
+		assertThat(path(b)).isEqualTo(path(a) + b.getId() + "/");
+	}
+
+	@Test
+	void aFolderCannotBeMovedIntoItsOwnSubtree() {
+		Folder a = folderService.create("a", null, ownerId);
+		Folder b = folderService.create("b", a.getId(), ownerId);
+		Folder c = folderService.create("c", b.getId(), ownerId);
+		entityManager.flush();
+
+		assertThatThrownBy(() -> folderService.move(a.getId(), ownerId, c.getId()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("A folder cannot be moved into itself");
+		assertThatThrownBy(() -> folderService.move(b.getId(), ownerId, b.getId()))
+				.isInstanceOf(IllegalArgumentException.class);
+		entityManager.clear();
+		assertThat(path(c)).isEqualTo("/" + a.getId() + "/" + b.getId() + "/" + c.getId() + "/");
+	}
+
+	@Test
+	void foldersWithoutAPathGetOneFromTheirParents() {
+		Folder a = folderService.create("a", null, ownerId);
+		Folder b = folderService.create("b", a.getId(), ownerId);
+		Folder c = folderService.create("c", b.getId(), ownerId);
+		Folder d = folderService.create("d", null, ownerId);
+		entityManager.flush();
+		entityManager.getEntityManager().createNativeQuery("UPDATE folders SET path = NULL WHERE id IN (:ids)")
+				.setParameter("ids", List.of(b.getId(), c.getId()))
+				.executeUpdate();
+		entityManager.clear();
+
+		assertThat(names(folderService.breadcrumbs(c.getId(), ownerId))).containsExactly("a", "b", "c");
+
+		folderService.move(c.getId(), ownerId, d.getId());
+		entityManager.flush();
+		entityManager.clear();
+		assertThat(path(c)).isEqualTo(path(d) + c.getId() + "/");
+	}
+
+	@Test
+	void deleteRemovesTheSubtreeAndQueuesItsBlobs() {
+		Folder a = folderService.create("a", null, ownerId);
+		Folder b = folderService.create("b", a.getId(), ownerId);
+		Folder c = folderService.create("c", b.getId(), ownerId);
+		Folder d = folderService.create("d", a.getId(), ownerId);
+		FileItem inB = file(b, "key-b");
+		FileItem inC = file(c, "key-shared");
+		file(c, "key-shared");
+		FileItem inD = file(d, "key-d");
+		ShareLink link = new ShareLink();
+		link.setLinkId("link-b");
+		link.setFileItem(inB);
+		link.setOwnerId(ownerId);
+		entityManager.persist(link);
+		PasshareSession session = new PasshareSession();
+		session.setCode("ABCD1234");
+		session.setCreatorId(ownerId);
+		entityManager.persist(session);
+		PasshareSessionFile shared = new PasshareSessionFile();
+		shared.setSession(session);
+		shared.setFileItem(inC);
+		shared.setSharedByUserId(ownerId);
+		entityManager.persist(shared);
+		entityManager.flush();
+		entityManager.clear();
+
+		folderService.delete(b.getId(), ownerId);
+		entityManager.clear();
+
+		assertThat(folderRepository.findAll()).extracting(Folder::getName).containsExactlyInAnyOrder("a", "d");
+		assertThat(fileItemRepository.findAll()).extracting(FileItem::getId).containsExactly(inD.getId());
+		assertThat(shareLinkRepository.findAll()).isEmpty();
+		assertThat(sessionFileRepository.findAll()).isEmpty();
+		// One entry per file, so the blob both files in c point at loses both references
+		assertThat(pendingBlobReleaseRepository.findAll()).extracting(PendingBlobRelease::getStorageKey)
+				.containsExactlyInAnyOrder("key-b", "key-shared", "key-shared");
+	}
+
+	@Test
+	void deleteOfAFolderWithoutAPath() {
+		Folder a = folderService.create("a", null, ownerId);
+		Folder b = folderService.create("b", a.getId(), ownerId);
+		file(b, "key-b");
+		entityManager.flush();
+		entityManager.getEntityManager().createNativeQuery("UPDATE folders SET path = NULL WHERE id = :id")
+				.setParameter("id", b.getId())
+				.executeUpdate();
+		entityManager.clear();
+
+		folderService.delete(b.getId(), ownerId);
+		entityManager.clear();
+
+		assertThat(folderRepository.findAll()).extracting(Folder::getName).containsExactly("a");
+		assertThat(fileItemRepository.findAll()).isEmpty();
+		assertThat(pendingBlobReleaseRepository.findAll()).extracting(PendingBlobRelease::getStorageKey)
+				.containsExactly("key-b");
+	}
+
+	@Test
+	void reclaimerReleasesQueuedBlobsAtItsRate() throws Exception {
+		Folder a = folderService.create("a", null, ownerId);
+		file(a, "key-1");
+		file(a, "key-2");
+		entityManager.flush();
+		folderService.delete(a.getId(), ownerId);
+		StorageService storageService = mock(StorageService.class);
+		BlobReclaimer reclaimer = new BlobReclaimer(pendingBlobReleaseRepository, storageService, transactionManager, 1);
+
+		reclaimer.reclaim();
+		assertThat(pendingBlobReleaseRepository.count()).isEqualTo(1);
+		reclaimer.reclaim();
+
+		assertThat(pendingBlobReleaseRepository.count()).isZero();
+		verify(storageService).release("key-1");
+		verify(storageService).release("key-2");
+	}
+
+	private FileItem file(Folder folder, String storageKey) {
+		FileItem item = new FileItem();
+		item.setName(storageKey + ".txt");
+		item.setSize(4);
+		item.setMimeType("text/plain");
+		item.setStorageKey(storageKey);
+		item.setOwnerId(ownerId);
+		item.setFolder(folder);
+		return entityManager.persist(item);
+	}
+
+	private String path(Folder folder) {
+		return folderRepository.findById(folder.getId()).orElseThrow().getPath();
+	}
+
+	private static List<String> names(List<FolderSummary> folders) {
+		return folders.stream().map(FolderSummary::name).toList();
+	}
+}
@@ -0,0 +1,68 @@
+package com.file.system.springboot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotFileCacheTests {
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@Test
+	void admitsFilesOnlyAfterRepeatedRequests() throws Exception {
+		HotFileCache cache = cache(DataSize.ofKilobytes(64));
+
+		assertThat(cache.get("a", 1024, this::load)).isNull();
+		assertThat(cache.get("a", 1024, this::load)).isNull();
+		assertThat(cache.get("a", 1024, this::load).remaining()).isEqualTo(1024);
+		assertThat(cache.get("a", 1024, this::load)).isNotNull();
+		assertThat(loads).hasValue(1);
+		// Too large to ever be read into memory
+		for (int i = 0; i < 5; i++) {
+			assertThat(cache.get("b", DataSize.ofKilobytes(65).toBytes(), this::load)).isNull();
+		}
+		assertThat(loads).hasValue(1);
+	}
+
+	@Test
+	void holdsNoMoreThanMaxBytes() throws Exception {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		HotFileCache cache = new HotFileCache(true, DataSize.ofKilobytes(2), DataSize.ofKilobytes(1), 3,
+				Duration.ofMinutes(10), meterRegistry);
+
+		ByteBuffer first = admit(cache, "a");
+		admit(cache, "b");
+		admit(cache, "c");
+
+		assertThat(meterRegistry.get("storage.hot-files.bytes").gauge().value()).isLessThanOrEqualTo(2048);
+		// Whichever buffer was evicted, a download still holding it can finish writing from it
+		assertThat(first.get(0)).isEqualTo((byte) 'x');
+	}
+
+	private ByteBuffer admit(HotFileCache cache, String key) throws Exception {
+		ByteBuffer buffer = null;
+		for (int i = 0; i < 3; i++) {
+			buffer = cache.get(key, 1024, this::load);
+		}
+		return buffer;
+	}
+
+	private HotFileCache cache(DataSize maxEntryBytes) {
+		return new HotFileCache(true, DataSize.ofMegabytes(1), maxEntryBytes, 3, Duration.ofMinutes(10), new SimpleMeterRegistry());
+	}
+
+	private ByteBuffer load() {
+		loads.incrementAndGet();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+		while (buffer.hasRemaining()) {
+			buffer.put((byte) 'x');
+		}
+		return buffer.flip();
+	}
+}
@@ -0,0 +1,59 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.repository.JobLeaseRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Leases are taken in transactions of their own, so the tests run outside one
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JobLeasesTests {
+
+	@Autowired
+	JobLeaseRepository jobLeaseRepository;
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	void oneReplicaAtATime() {
+		JobLeases first = new JobLeases(jobLeaseRepository, transactionManager);
+		JobLeases second = new JobLeases(jobLeaseRepository, transactionManager);
+
+		assertThat(first.acquire("one-at-a-time", Duration.ofHours(1))).isTrue();
+		assertThat(second.acquire("one-at-a-time", Duration.ofHours(1))).isFalse();
+		assertThat(first.acquire("one-at-a-time", Duration.ofHours(1))).isFalse();
+
+		first.release("one-at-a-time");
+		assertThat(second.acquire("one-at-a-time", Duration.ofHours(1))).isTrue();
+	}
+
+	@Test
+	void onlyTheHolderCanGiveTheLeaseUp() {
+		JobLeases holder = new JobLeases(jobLeaseRepository, transactionManager);
+		JobLeases other = new JobLeases(jobLeaseRepository, transactionManager);
+		holder.acquire("held", Duration.ofHours(1));
+
+		other.release("held");
+
+		assertThat(other.acquire("held", Duration.ofHours(1))).isFalse();
+	}
+
+	@Test
+	void anExpiredLeaseCanBeTakenOver() throws Exception {
+		JobLeases crashed = new JobLeases(jobLeaseRepository, transactionManager);
+		JobLeases next = new JobLeases(jobLeaseRepository, transactionManager);
+		crashed.acquire("expiring", Duration.ofMillis(50));
+
+		Thread.sleep(100);
+
+		assertThat(next.acquire("expiring", Duration.ofHours(1))).isTrue();
+	}
+}
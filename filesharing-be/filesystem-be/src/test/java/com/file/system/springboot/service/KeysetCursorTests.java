@@ -0,0 +1,85 @@
+package com.file.system.springboot.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTests {
+
+	private static final Map<String, Class<?>> SORT_KEYS = Map.of("name", String.class, "uploadedAt", Instant.class);
+
+	@Test
+	void roundTripsTheKeysWithTheirTypes() {
+		Map<String, Object> keys = new LinkedHashMap<>();
+		keys.put("uploadedAt", Instant.parse("2024-05-01T10:15:30.123456Z"));
+		keys.put("id", 3_000_000_000L);
+
+		KeysetScrollPosition position = KeysetCursor.position(KeysetCursor.encode(ScrollPosition.forward(keys)),
+				"uploadedAt", SORT_KEYS, 100);
+
+		assertThat(position.getKeys()).containsExactlyEntriesOf(keys);
+		assertThat(position.scrollsForward()).isTrue();
+	}
+
+	@Test
+	void smallIdsComeBackAsLongs() {
+		Map<String, Object> keys = new LinkedHashMap<>();
+		keys.put("name", "a.txt");
+		keys.put("id", 7L);
+
+		KeysetScrollPosition position = KeysetCursor.position(KeysetCursor.encode(ScrollPosition.forward(keys)),
+				"name", SORT_KEYS, 100);
+
+		assertThat(position.getKeys().get("id")).isEqualTo(7L);
+	}
+
+	@Test
+	void noCursorStartsAtTheBeginning() {
+		assertThat(KeysetCursor.position(null, "name", SORT_KEYS, 100).isInitial()).isTrue();
+		assertThat(KeysetCursor.position(" ", "name", SORT_KEYS, 100).isInitial()).isTrue();
+	}
+
+	@Test
+	void rejectsCursorsFromAnotherSort() {
+		Map<String, Object> keys = new LinkedHashMap<>();
+		keys.put("name", "a.txt");
+		keys.put("id", 7L);
+		String cursor = KeysetCursor.encode(ScrollPosition.forward(keys));
+
+		assertThatThrownBy(() -> KeysetCursor.position(cursor, "uploadedAt", SORT_KEYS, 100))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Cursor does not match the requested sort");
+	}
+
+	@Test
+	void rejectsMalformedCursors() {
+		String wrongType = Base64.getUrlEncoder().encodeToString("{\"uploadedAt\":\"yesterday\",\"id\":1}".getBytes());
+
+		assertThatThrownBy(() -> KeysetCursor.position("%%%", "name", SORT_KEYS, 100))
+				.isInstanceOf(IllegalArgumentException.class).hasMessage("Invalid cursor");
+		assertThatThrownBy(() -> KeysetCursor.position("bm90IGpzb24", "name", SORT_KEYS, 100))
+				.isInstanceOf(IllegalArgumentException.class).hasMessage("Invalid cursor");
+		assertThatThrownBy(() -> KeysetCursor.position(wrongType, "uploadedAt", SORT_KEYS, 100))
+				.isInstanceOf(IllegalArgumentException.class).hasMessage("Invalid cursor");
+	}
+
+	@Test
+	void rejectsUnknownSortsAndLimits() {
+		assertThatThrownBy(() -> KeysetCursor.position(null, "size", SORT_KEYS, 100))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> KeysetCursor.position(null, "name", SORT_KEYS, 0))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> KeysetCursor.position(null, "name", SORT_KEYS, KeysetCursor.MAX_PAGE_SIZE + 1))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> KeysetCursor.sort("name", "sideways"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
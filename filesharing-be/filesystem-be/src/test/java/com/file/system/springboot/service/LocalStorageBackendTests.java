@@ -0,0 +1,56 @@
+package com.file.system.springboot.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalStorageBackendTests {
+
+	@TempDir
+	Path storageRoot;
+
+	@Test
+	void listsALargeFlatRootTogetherWithTheShardsInOrder() throws Exception {
+		List<String> expected = new ArrayList<>();
+		// Left flat, as by a store that has not been migrated yet
+		for (int i = 0; i < 2 * LocalStorageBackend.RUN_LENGTH + 7; i++) {
+			String key = UUID.randomUUID() + "_f.txt";
+			Files.createFile(storageRoot.resolve(key));
+			expected.add(key);
+		}
+		LocalStorageBackend backend = new LocalStorageBackend(storageRoot.toString(), true);
+		for (int i = 0; i < 3; i++) {
+			String key = UUID.randomUUID() + "_s.txt";
+			Path temp = backend.createTempFile();
+			backend.put(key, temp);
+			expected.add(key);
+		}
+
+		try (Stream<String> keys = backend.list()) {
+			assertThat(keys.toList()).isSorted().containsExactlyInAnyOrderElementsOf(expected);
+		}
+		try (Stream<Path> temp = Files.list(storageRoot.resolve(".tmp"))) {
+			assertThat(temp).isEmpty();
+		}
+	}
+
+	@Test
+	void listsASmallFlatRootWithoutSpilling() throws Exception {
+		LocalStorageBackend backend = new LocalStorageBackend(storageRoot.toString(), false);
+		for (String key : List.of("b_2.txt", "a_1.txt", "c_3.txt")) {
+			backend.put(key, backend.createTempFile());
+		}
+
+		try (Stream<String> keys = backend.list()) {
+			assertThat(keys.toList()).containsExactly("a_1.txt", "b_2.txt", "c_3.txt");
+		}
+	}
+}
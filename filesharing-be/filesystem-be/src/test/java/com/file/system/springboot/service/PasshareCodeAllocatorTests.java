@@ -0,0 +1,96 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.PasshareCodeSequence;
+import com.file.system.springboot.repository.PasshareCodeSequenceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PasshareCodeAllocatorTests {
+
+	private PasshareCodeSequenceRepository sequenceRepository;
+	private PasshareCodeSequence sequence;
+
+	@BeforeEach
+	void setUp() {
+		sequenceRepository = mock(PasshareCodeSequenceRepository.class);
+		// Stands in for the row shared by all replicas, locked from the read until the write
+		ReentrantLock rowLock = new ReentrantLock();
+		when(sequenceRepository.lockByName(anyString())).thenAnswer(invocation -> {
+			rowLock.lock();
+			return Optional.ofNullable(sequence);
+		});
+		when(sequenceRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+			sequence = invocation.getArgument(0);
+			rowLock.unlock();
+			return sequence;
+		});
+	}
+
+	@Test
+	void replicasSharingTheSequenceNeverHandOutTheSameCode() throws Exception {
+		PasshareCodeAllocator first = allocator(100);
+		PasshareCodeAllocator second = allocator(100);
+		Set<String> codes = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 20_000; i++) {
+			PasshareCodeAllocator allocator = i % 2 == 0 ? first : second;
+			executor.execute(() -> codes.add(allocator.next()));
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(codes).hasSize(20_000).allMatch(code -> code.matches("[A-Z0-9]{8}"));
+		assertThat(sequence.getNextValue()).isEqualTo(20_000);
+	}
+
+	@Test
+	void createsTheSequenceWithARandomKeyAndKeepsIt() {
+		PasshareCodeAllocator allocator = allocator(2);
+		String firstCode = allocator.next();
+		String key = sequence.getPermutationKey();
+		allocator.next();
+		allocator.next();
+
+		assertThat(key).isNotBlank();
+		assertThat(sequence.getPermutationKey()).isEqualTo(key);
+		verify(sequenceRepository, times(2)).saveAndFlush(any());
+		// Another replica with the same key maps the same counter value to the same code
+		sequence.setNextValue(0);
+		assertThat(allocator(2).next()).isEqualTo(firstCode);
+	}
+
+	@Test
+	void permutesTheWholeCodeSpaceWithoutCollisions() {
+		PasshareCodeAllocator allocator = allocator(1);
+		allocator.next();
+		Set<Long> permuted = new HashSet<>();
+		for (long value = 0; value < 100_000; value++) {
+			long code = allocator.permute(value);
+			assertThat(code).isBetween(0L, PasshareCodeAllocator.CODE_SPACE - 1);
+			permuted.add(code);
+		}
+
+		assertThat(permuted).hasSize(100_000);
+		assertThat(PasshareCodeAllocator.encode(0)).isEqualTo("AAAAAAAA");
+		assertThat(PasshareCodeAllocator.encode(PasshareCodeAllocator.CODE_SPACE - 1)).isEqualTo("99999999");
+	}
+
+	private PasshareCodeAllocator allocator(int blockSize) {
+		return new PasshareCodeAllocator(sequenceRepository, mock(PlatformTransactionManager.class), blockSize);
+	}
+}
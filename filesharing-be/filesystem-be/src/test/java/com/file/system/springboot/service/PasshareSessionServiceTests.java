@@ -0,0 +1,76 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.PasshareSession;
+import com.file.system.springboot.model.PasshareSessionParticipant;
+import com.file.system.springboot.repository.FileItemRepository;
+import com.file.system.springboot.repository.PasshareSessionFileRepository;
+import com.file.system.springboot.repository.PasshareSessionParticipantRepository;
+import com.file.system.springboot.repository.PasshareSessionRepository;
+import com.file.system.springboot.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class PasshareSessionServiceTests {
+
+	private PasshareSessionParticipantRepository participantRepository;
+	private ActiveSessionRegistry sessionRegistry;
+	private PasshareSessionService sessionService;
+
+	@BeforeEach
+	void setUp() {
+		PasshareSessionRepository sessionRepository = mock(PasshareSessionRepository.class);
+		PasshareSessionFileRepository sessionFileRepository = mock(PasshareSessionFileRepository.class);
+		participantRepository = mock(PasshareSessionParticipantRepository.class);
+
+		PasshareSession session = new PasshareSession();
+		session.setId(1L);
+		session.setCreatorId(10L);
+		session.setActive(true);
+		session.setExpiresAt(Instant.now().plusSeconds(3600));
+		PasshareSessionParticipant creator = new PasshareSessionParticipant();
+		creator.setUserId(10L);
+		when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
+		when(participantRepository.findBySessionId(1L)).thenReturn(List.of(creator));
+
+		sessionRegistry = new ActiveSessionRegistry(sessionRepository, participantRepository, sessionFileRepository,
+				new SimpleMeterRegistry(), 100, Duration.ofMinutes(10));
+		sessionService = new PasshareSessionService(sessionRepository, participantRepository, sessionFileRepository,
+				mock(UserRepository.class), mock(FileItemRepository.class), mock(DownloadCounter.class),
+				mock(ApplicationEventPublisher.class), sessionRegistry, mock(SessionChangeFeed.class),
+				mock(PasshareCodeAllocator.class));
+	}
+
+	@Test
+	void remembersAParticipantWhoJoinedThroughAnotherReplica() {
+		when(participantRepository.existsBySessionIdAndUserId(1L, 20L)).thenReturn(true);
+
+		assertThat(sessionService.getSession(1L, 20L)).isPresent();
+		assertThat(sessionRegistry.find(1L).orElseThrow().hasParticipant(20L)).isTrue();
+		assertThat(sessionService.getSession(1L, 20L)).isPresent();
+		verify(participantRepository, times(2)).existsBySessionIdAndUserId(1L, 20L);
+	}
+
+	@Test
+	void doesNotAddBackAParticipantWhoseLeaveCommittedMeanwhile() {
+		// The row is still there when first looked up; the leave commits and reaches the registry before the
+		// user is added back
+		when(participantRepository.existsBySessionIdAndUserId(1L, 20L)).thenAnswer(invocation -> {
+			sessionRegistry.onSessionEvent(new SessionEvent(1L, SessionEvent.PARTICIPANT_LEFT, Map.of("userId", 20L)));
+			return true;
+		}).thenReturn(false);
+
+		assertThat(sessionService.getSession(1L, 20L)).isEmpty();
+		assertThat(sessionRegistry.find(1L).orElseThrow().hasParticipant(20L)).isFalse();
+	}
+}
@@ -0,0 +1,48 @@
+package com.file.system.springboot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHasherTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void skipsBcryptForARecentlyVerifiedPasswordOnly() {
+		PasswordHasher hasher = new PasswordHasher(meterRegistry, 1, 10, Duration.ofMinutes(5), 100);
+		String hash = BCrypt.hashpw("secret", BCrypt.gensalt(4));
+
+		assertThat(hasher.check(1L, "wrong", hash).join()).isFalse();
+		assertThat(hasher.check(1L, "secret", hash).join()).isTrue();
+		CompletableFuture<Boolean> repeat = hasher.check(1L, "secret", hash);
+		assertThat(repeat).isCompletedWithValue(true);
+		assertThat(hasher.check(1L, "wrong", hash).join()).isFalse();
+		// The remembered password no longer counts once the stored hash has changed
+		assertThat(hasher.check(1L, "secret", BCrypt.hashpw("other", BCrypt.gensalt(4))).join()).isFalse();
+
+		assertThat(meterRegistry.counter("auth.password.check", "path", "fast", "outcome", "match").count()).isEqualTo(1);
+		hasher.shutdown();
+	}
+
+	@Test
+	void refusesWorkBeyondTheQueueCapacity() {
+		PasswordHasher hasher = new PasswordHasher(meterRegistry, 1, 1, Duration.ofMinutes(5), 100);
+
+		CompletableFuture<String> running = hasher.hash("a");
+		CompletableFuture<String> queued = hasher.hash("b");
+
+		assertThatThrownBy(() -> hasher.hash("c")).isInstanceOf(RejectedExecutionException.class);
+		assertThat(BCrypt.checkpw("b", queued.join())).isTrue();
+		assertThat(running.join()).isNotEmpty();
+		assertThat(meterRegistry.counter("auth.password.rejected").count()).isEqualTo(1);
+		hasher.shutdown();
+	}
+}
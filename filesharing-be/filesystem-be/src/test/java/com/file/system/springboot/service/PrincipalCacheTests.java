@@ -0,0 +1,57 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.User;
+import com.file.system.springboot.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class PrincipalCacheTests {
+
+	private UserRepository userRepository;
+	private PrincipalCache principalCache;
+
+	@BeforeEach
+	void setUp() {
+		userRepository = mock(UserRepository.class);
+		principalCache = new PrincipalCache(userRepository, new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+	}
+
+	@Test
+	void readsEachUserOnceUntilItChanges() {
+		when(userRepository.findById(7L)).thenReturn(Optional.of(user(7L, "before")), Optional.of(user(7L, "after")));
+
+		for (int i = 0; i < 1000; i++) {
+			assertThat(principalCache.get(7L)).map(AuthenticatedUser::username).contains("before");
+		}
+		ObjectProvider<PrincipalCache> provider = mock();
+		when(provider.getObject()).thenReturn(principalCache);
+		new UserChangeListener(provider).userChanged(user(7L, "after"));
+
+		assertThat(principalCache.get(7L)).map(AuthenticatedUser::username).contains("after");
+		verify(userRepository, times(2)).findById(7L);
+	}
+
+	@Test
+	void doesNotRememberMissingUsers() {
+		when(userRepository.findById(9L)).thenReturn(Optional.empty(), Optional.of(user(9L, "new")));
+
+		assertThat(principalCache.get(9L)).isEmpty();
+		assertThat(principalCache.get(9L)).isPresent();
+	}
+
+	private static User user(Long id, String username) {
+		User user = new User();
+		user.setId(id);
+		user.setUsername(username);
+		user.setEmail(username + "@example.com");
+		return user;
+	}
+}
@@ -0,0 +1,128 @@
+package com.file.system.springboot.service;
+
+import com.adobe.testing.s3mock.junit5.S3MockExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class S3StorageBackendTests {
+
+	@RegisterExtension
+	static final S3MockExtension S3_MOCK = S3MockExtension.builder()
+			.silent()
+			.withInitialBuckets("files")
+			// The mock is a Spring Boot app too and sees this application's application.properties instead of
+			// its own; give it its region and keep it away from this application's database and security
+			.withProperty("com.adobe.testing.s3mock.region", "us-east-1")
+			.withProperty("spring.autoconfigure.exclude", String.join(",",
+					"org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration",
+					"org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration",
+					"org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration",
+					"org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration",
+					"org.springframework.boot.autoconfigure.security.servlet.SecurityFilterAutoConfiguration",
+					"org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration",
+					"org.springframework.boot.actuate.autoconfigure.security.servlet.ManagementWebSecurityAutoConfiguration"))
+			.build();
+
+	private static final int PART_SIZE = 5 * 1024 * 1024;
+
+	@TempDir
+	Path staging;
+
+	private S3Client s3;
+	private S3StorageBackend backend;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		s3 = S3_MOCK.createS3ClientV2();
+		backend = new S3StorageBackend(s3, "files", DataSize.ofBytes(PART_SIZE), 4, staging.toString());
+	}
+
+	@AfterEach
+	void tearDown() {
+		backend.shutdown();
+		s3.close();
+	}
+
+	@Test
+	void putsLargeFilesInPartsAndReadsRanges() throws Exception {
+		byte[] content = randomBytes(2 * PART_SIZE + 123);
+		Path temp = backend.createTempFile();
+		Files.write(temp, content);
+
+		backend.put("large", temp);
+
+		assertThat(temp).doesNotExist();
+		assertThat(backend.size("large")).isEqualTo(content.length);
+		try (InputStream in = backend.open("large")) {
+			assertThat(in.readAllBytes()).isEqualTo(content);
+		}
+		ByteArrayOutputStream range = new ByteArrayOutputStream();
+		backend.transferTo("large", PART_SIZE - 10, 20, Channels.newChannel(range));
+		assertThat(range.toByteArray()).isEqualTo(Arrays.copyOfRange(content, PART_SIZE - 10, PART_SIZE + 10));
+	}
+
+	@Test
+	void assemblesChunkedUploadsOutOfOrder() throws Exception {
+		byte[] content = randomBytes(PART_SIZE + 42);
+		String uploadId = backend.beginUpload("chunked");
+
+		backend.writePart("chunked", uploadId, 1, PART_SIZE, new ByteArrayInputStream(content, PART_SIZE, 42), 42);
+		backend.writePart("chunked", uploadId, 0, 0, new ByteArrayInputStream(content, 0, PART_SIZE), PART_SIZE);
+		backend.completeUpload("chunked", uploadId);
+
+		try (InputStream in = backend.open("chunked")) {
+			assertThat(in.readAllBytes()).isEqualTo(content);
+		}
+	}
+
+	@Test
+	void deletesObjects() throws Exception {
+		Path temp = backend.createTempFile();
+		Files.writeString(temp, "hello");
+		backend.put("target", temp);
+
+		assertThat(backend.size("target")).isEqualTo(5);
+		backend.delete("target");
+		assertThat(backend.exists("target")).isFalse();
+		assertThatThrownBy(() -> backend.open("target")).isInstanceOf(NoSuchFileException.class);
+	}
+
+	@Test
+	void listsKeysInOrder() throws Exception {
+		for (String key : List.of("list-b", "list-a_2", "list-a")) {
+			Path temp = backend.createTempFile();
+			Files.writeString(temp, key);
+			backend.put(key, temp);
+		}
+
+		try (Stream<String> keys = backend.list()) {
+			assertThat(keys.toList()).isSorted().containsSubsequence("list-a", "list-a_2", "list-b");
+		}
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(42).nextBytes(bytes);
+		return bytes;
+	}
+}
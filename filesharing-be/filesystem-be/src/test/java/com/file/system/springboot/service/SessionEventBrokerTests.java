@@ -0,0 +1,139 @@
+package com.file.system.springboot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class SessionEventBrokerTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final SessionEventBroker broker = new SessionEventBroker(meterRegistry, Duration.ofMinutes(30), 4) {
+		@Override
+		SseEmitter newEmitter(long timeoutMillis) {
+			return new RecordingEmitter();
+		}
+	};
+
+	@Test
+	void deliversEventsToTheSubscribersOfTheirSession() {
+		RecordingEmitter alice = (RecordingEmitter) broker.subscribe(1L, 10L);
+		RecordingEmitter bob = (RecordingEmitter) broker.subscribe(1L, 11L);
+		RecordingEmitter other = (RecordingEmitter) broker.subscribe(2L, 12L);
+
+		broker.publish(new SessionEvent(1L, SessionEvent.FILE_SHARED, Map.of("fileId", 5L)));
+
+		await().untilAsserted(() -> {
+			assertThat(alice.names()).containsExactly("ready", SessionEvent.FILE_SHARED);
+			assertThat(bob.names()).containsExactly("ready", SessionEvent.FILE_SHARED);
+		});
+		assertThat(other.names()).containsExactly("ready");
+		assertThat(subscribers()).isEqualTo(3);
+	}
+
+	@Test
+	void closesTheStreamOfAParticipantWhoLeft() {
+		RecordingEmitter alice = (RecordingEmitter) broker.subscribe(1L, 10L);
+		RecordingEmitter bob = (RecordingEmitter) broker.subscribe(1L, 11L);
+
+		// As relayed from another replica, with the id read back from JSON
+		broker.publish(new SessionEvent(1L, SessionEvent.PARTICIPANT_LEFT, Map.of("userId", 11)));
+		broker.publish(new SessionEvent(1L, SessionEvent.FILE_SHARED, Map.of("fileId", 5L)));
+
+		await().untilAsserted(() -> {
+			assertThat(bob.completed).isTrue();
+			assertThat(alice.names()).containsExactly("ready", SessionEvent.PARTICIPANT_LEFT, SessionEvent.FILE_SHARED);
+		});
+		assertThat(bob.names()).containsExactly("ready", SessionEvent.PARTICIPANT_LEFT);
+		assertThat(alice.completed).isFalse();
+		assertThat(subscribers()).isEqualTo(1);
+	}
+
+	@Test
+	void closesEveryStreamWhenTheSessionEnds() {
+		RecordingEmitter alice = (RecordingEmitter) broker.subscribe(1L, 10L);
+
+		broker.publish(new SessionEvent(1L, SessionEvent.SESSION_ENDED, Map.of()));
+
+		await().untilAsserted(() -> assertThat(alice.completed).isTrue());
+		assertThat(alice.names()).containsExactly("ready", SessionEvent.SESSION_ENDED);
+		assertThat(subscribers()).isZero();
+	}
+
+	@Test
+	void dropsASubscriberThatFallsTooFarBehind() {
+		RecordingEmitter slow = (RecordingEmitter) broker.subscribe(1L, 10L);
+		RecordingEmitter fast = (RecordingEmitter) broker.subscribe(1L, 11L);
+		await().untilAsserted(() -> assertThat(slow.names()).containsExactly("ready"));
+		slow.gate = new CountDownLatch(1);
+
+		// The first write blocks, four more fit in the queue, the sixth overflows it
+		broker.publish(new SessionEvent(1L, SessionEvent.FILE_SHARED, Map.of("fileId", 0L)));
+		await().untilAsserted(() -> assertThat(slow.blocked).isTrue());
+		for (int i = 1; i < 6; i++) {
+			broker.publish(new SessionEvent(1L, SessionEvent.FILE_SHARED, Map.of("fileId", (long) i)));
+			// The other subscriber keeps up
+			int delivered = i + 2;
+			await().untilAsserted(() -> assertThat(fast.names()).hasSize(delivered));
+		}
+		assertThat(subscribers()).isEqualTo(1);
+		slow.gate.countDown();
+
+		await().untilAsserted(() -> assertThat(slow.completed).isTrue());
+		assertThat(slow.names()).containsExactly("ready", SessionEvent.FILE_SHARED);
+		assertThat(fast.completed).isFalse();
+	}
+
+	private double subscribers() {
+		return meterRegistry.get("passhare.events.subscribers").gauge().value();
+	}
+
+	private static class RecordingEmitter extends SseEmitter {
+		private final List<String> names = new ArrayList<>();
+		// Holds writes back while set, like a client that stopped reading
+		volatile CountDownLatch gate;
+		volatile boolean blocked;
+		volatile boolean completed;
+
+		@Override
+		public void send(SseEventBuilder event) {
+			CountDownLatch current = gate;
+			if (current != null) {
+				blocked = true;
+				try {
+					current.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			String text = event.build().stream()
+					.map(part -> String.valueOf(part.getData()))
+					.collect(Collectors.joining());
+			synchronized (names) {
+				text.lines().filter(line -> line.startsWith("event:"))
+						.forEach(line -> names.add(line.substring("event:".length())));
+			}
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+
+		List<String> names() {
+			synchronized (names) {
+				return List.copyOf(names);
+			}
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.repository.PasshareSessionRepository;
+import com.file.system.springboot.repository.SessionDeadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class SessionExpirySchedulerTests {
+
+	private PasshareSessionService sessionService;
+	private PasshareSessionRepository sessionRepository;
+	private SessionExpiryScheduler scheduler;
+
+	@BeforeEach
+	void setUp() {
+		sessionService = mock(PasshareSessionService.class);
+		sessionRepository = mock(PasshareSessionRepository.class);
+		scheduler = new SessionExpiryScheduler(sessionService, sessionRepository, Duration.ofMinutes(1), Duration.ofDays(1), 100);
+	}
+
+	@AfterEach
+	void tearDown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	void expiresOverdueSessionsTogetherAndLaterOnesAtTheirDeadline() {
+		Instant now = Instant.now();
+		when(sessionRepository.findDeadlinesBefore(any())).thenReturn(List.of(
+				new SessionDeadline(1L, now.minusSeconds(5)),
+				new SessionDeadline(2L, now.minusSeconds(1))));
+
+		scheduler.afterSingletonsInstantiated();
+		verify(sessionService, timeout(2000)).expireSessions(List.of(1L, 2L));
+
+		scheduler.onSessionEvent(new SessionEvent(3L, SessionEvent.SESSION_CREATED,
+				Map.of("expiresAt", now.plusMillis(300).toString())));
+		scheduler.onSessionEvent(new SessionEvent(4L, SessionEvent.SESSION_CREATED,
+				Map.of("expiresAt", now.plusSeconds(3600))));
+		verify(sessionService, timeout(2000)).expireSessions(List.of(3L));
+		verify(sessionService, never()).expireSessions(argThat(ids -> ids.contains(4L)));
+	}
+
+	@Test
+	void purgesInBatchesUntilNothingIsLeft() {
+		when(sessionService.purgeEndedSessions(any(), eq(100))).thenReturn(100, 100, 7);
+
+		scheduler.purge();
+
+		verify(sessionService, times(3)).purgeEndedSessions(any(), eq(100));
+	}
+}
@@ -0,0 +1,87 @@
+package com.file.system.springboot.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StorageLayoutMigratorTests {
+
+	private static final String KEY = "abcd1234-0000-0000-0000-000000000000_a.txt";
+
+	@TempDir
+	Path storageRoot;
+
+	private LocalStorageBackend backend;
+	private StorageLayoutMigrator migrator;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		backend = new LocalStorageBackend(storageRoot.toString(), true);
+		migrator = new StorageLayoutMigrator(backend, 1_000_000, Duration.ZERO);
+		// Written before the storage was sharded
+		Files.writeString(storageRoot.resolve(KEY), "legacy");
+		Files.writeString(storageRoot.resolve("notes.txt"), "not hex");
+	}
+
+	@Test
+	void shardsHexKeysAndLeavesOthersFlat() throws Exception {
+		Path temp = backend.createTempFile();
+		Files.writeString(temp, "new");
+		backend.put("ef012345_b.txt", temp);
+
+		assertThat(backend.resolve("ef012345_b.txt")).isEqualTo(storageRoot.resolve("ef/01/ef012345_b.txt"));
+		assertThat(Files.readString(storageRoot.resolve("ef/01/ef012345_b.txt"))).isEqualTo("new");
+		assertThat(backend.resolve("notes.txt")).isEqualTo(storageRoot.resolve("notes.txt"));
+		assertThat(backend.shardedPath("../x")).isNull();
+		// Not migrated yet
+		assertThat(backend.resolve(KEY)).isEqualTo(storageRoot.resolve(KEY));
+	}
+
+	@Test
+	void pathsHandedOutBeforeTheMigrationKeepWorkingUntilTheGracePeriodIsOver() throws Exception {
+		// As given to sendfile by a download that has not been written out yet
+		Path handedOut = backend.localPath(KEY).orElseThrow();
+
+		migrator.linkAll();
+
+		Path sharded = storageRoot.resolve("ab/cd/" + KEY);
+		assertThat(backend.resolve(KEY)).isEqualTo(sharded);
+		assertThat(Files.readString(handedOut)).isEqualTo("legacy");
+		assertThat(Files.readString(sharded)).isEqualTo("legacy");
+
+		try (FileChannel open = FileChannel.open(handedOut, StandardOpenOption.READ)) {
+			migrator.removeLinked();
+
+			assertThat(Files.exists(handedOut)).isFalse();
+			assertThat(open.size()).isEqualTo(6);
+		}
+		assertThat(Files.readString(backend.resolve(KEY))).isEqualTo("legacy");
+		assertThat(backend.resolve("notes.txt")).isEqualTo(storageRoot.resolve("notes.txt"));
+	}
+
+	@Test
+	void deletingDuringTheGracePeriodRemovesBothNames() throws Exception {
+		migrator.linkAll();
+
+		backend.delete(KEY);
+
+		assertThat(Files.exists(storageRoot.resolve(KEY))).isFalse();
+		assertThat(backend.exists(KEY)).isFalse();
+	}
+
+	@Test
+	void migratesEverythingInOneRun() throws Exception {
+		migrator.migrate();
+
+		assertThat(Files.exists(storageRoot.resolve(KEY))).isFalse();
+		assertThat(Files.readString(storageRoot.resolve("ab/cd/" + KEY))).isEqualTo("legacy");
+	}
+}
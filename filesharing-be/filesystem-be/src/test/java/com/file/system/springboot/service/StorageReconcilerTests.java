@@ -0,0 +1,140 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.QuarantinedBlob;
+import com.file.system.springboot.repository.FileItemRepository;
+import com.file.system.springboot.repository.QuarantinedBlobRepository;
+import com.file.system.springboot.repository.StorageBlobRepository;
+import com.file.system.springboot.repository.UploadSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StorageReconcilerTests {
+
+	@TempDir
+	Path storageRoot;
+
+	private LocalStorageBackend backend;
+	private StorageBlobRepository storageBlobRepository;
+	private FileItemRepository fileItemRepository;
+	private UploadSessionRepository uploadSessionRepository;
+	private QuarantinedBlobRepository quarantinedBlobRepository;
+	private SimpleMeterRegistry meterRegistry;
+	private JobLeases jobLeases;
+	private StorageReconciler reconciler;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		backend = new LocalStorageBackend(storageRoot.toString(), true);
+		storageBlobRepository = mock(StorageBlobRepository.class);
+		fileItemRepository = mock(FileItemRepository.class);
+		uploadSessionRepository = mock(UploadSessionRepository.class);
+		quarantinedBlobRepository = mock(QuarantinedBlobRepository.class);
+		meterRegistry = new SimpleMeterRegistry();
+		HotFileCache hotFileCache = new HotFileCache(false, DataSize.ofMegabytes(1), DataSize.ofKilobytes(64), 3, Duration.ofMinutes(10), meterRegistry);
+		StorageService storageService = new StorageService(backend, false, false, 0.8, storageBlobRepository, hotFileCache);
+		jobLeases = mock(JobLeases.class);
+		when(jobLeases.acquire(anyString(), any())).thenReturn(true);
+		reconciler = new StorageReconciler(backend, storageService, storageBlobRepository, fileItemRepository,
+				uploadSessionRepository, quarantinedBlobRepository, mock(PlatformTransactionManager.class), meterRegistry,
+				jobLeases, Duration.ofHours(6), 1_000_000, 1_000_000, Duration.ofDays(7));
+
+		for (String key : List.of("cccc3333", "aaaa1111", "bbbb2222")) {
+			store(key);
+		}
+		// Written before the storage was sharded
+		Files.writeString(storageRoot.resolve("legacy.txt"), "legacy");
+	}
+
+	@Test
+	void listsShardedAndFlatKeysInOrder() throws Exception {
+		try (Stream<String> keys = backend.list()) {
+			assertThat(keys.toList()).containsExactly("aaaa1111", "bbbb2222", "cccc3333", "legacy.txt");
+		}
+	}
+
+	@Test
+	void quarantinesUnreferencedObjectsAndCountsMissingOnes() throws Exception {
+		when(storageBlobRepository.findKeysAfter(eq(""), any(Limit.class))).thenReturn(List.of("aaaa1111", "dddd4444"));
+		when(storageBlobRepository.findKeysAfter(eq("dddd4444"), any(Limit.class))).thenReturn(List.of());
+		when(fileItemRepository.findStorageKeysAfter(eq(""), any(Limit.class))).thenReturn(List.of("legacy.txt"));
+		when(fileItemRepository.findStorageKeysAfter(eq("legacy.txt"), any(Limit.class))).thenReturn(List.of());
+		// A chunked upload still in progress
+		when(uploadSessionRepository.existsByStorageKey("cccc3333")).thenReturn(true);
+
+		reconciler.scan();
+
+		verify(quarantinedBlobRepository).quarantine(eq("bbbb2222"), any(Instant.class));
+		verify(quarantinedBlobRepository, times(1)).quarantine(anyString(), any(Instant.class));
+		assertThat(meterRegistry.get("storage.reconcile.orphans").gauge().value()).isEqualTo(1);
+		assertThat(meterRegistry.get("storage.reconcile.dangling").gauge().value()).isEqualTo(1);
+	}
+
+	@Test
+	void purgesQuarantinedObjectsThatAreStillUnreferenced() throws Exception {
+		when(quarantinedBlobRepository.findByFoundAtBeforeOrderByFoundAt(any(Instant.class), any(Limit.class)))
+				.thenReturn(List.of(quarantined("bbbb2222"), quarantined("cccc3333")));
+		when(fileItemRepository.existsByStorageKey("cccc3333")).thenReturn(true);
+
+		reconciler.purge();
+
+		assertThat(backend.exists("bbbb2222")).isFalse();
+		assertThat(backend.exists("cccc3333")).isTrue();
+		verify(quarantinedBlobRepository).deleteById("bbbb2222");
+		verify(quarantinedBlobRepository).deleteById("cccc3333");
+		assertThat(meterRegistry.get("storage.reconcile.purged").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void runsOnlyOnTheReplicaHoldingTheLease() {
+		when(jobLeases.acquire(eq("storage-reconcile"), any())).thenReturn(false);
+
+		reconciler.reconcile();
+
+		verifyNoInteractions(storageBlobRepository, fileItemRepository, quarantinedBlobRepository);
+		verify(jobLeases, never()).release(anyString());
+	}
+
+	@Test
+	void givesUpTheLeaseWhenItIsDone() {
+		when(storageBlobRepository.findKeysAfter(anyString(), any(Limit.class))).thenReturn(List.of());
+		when(fileItemRepository.findStorageKeysAfter(anyString(), any(Limit.class))).thenReturn(List.of());
+		when(quarantinedBlobRepository.findByFoundAtBeforeOrderByFoundAt(any(Instant.class), any(Limit.class)))
+				.thenReturn(List.of());
+
+		reconciler.reconcile();
+
+		verify(jobLeases).acquire("storage-reconcile", Duration.ofHours(6));
+		verify(jobLeases).release("storage-reconcile");
+	}
+
+	private void store(String key) throws Exception {
+		Path temp = backend.createTempFile();
+		Files.writeString(temp, key);
+		backend.put(key, temp);
+	}
+
+	private static QuarantinedBlob quarantined(String key) {
+		QuarantinedBlob blob = new QuarantinedBlob();
+		blob.setStorageKey(key);
+		blob.setFoundAt(Instant.EPOCH);
+		return blob;
+	}
+}
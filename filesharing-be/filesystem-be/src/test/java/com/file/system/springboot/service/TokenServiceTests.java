@@ -0,0 +1,83 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.User;
+import com.file.system.springboot.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class TokenServiceTests {
+
+	private static final String OLD_KEY = "k1:" + Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+	private static final String NEW_KEY = "k2:" + Base64.getEncoder().encodeToString("fedcba9876543210fedcba9876543210".getBytes());
+
+	private TokenRevocationList revocationList;
+	private User user;
+
+	@BeforeEach
+	void setUp() {
+		revocationList = new TokenRevocationList(mock(RevokedTokenRepository.class));
+		user = new User();
+		user.setId(42L);
+	}
+
+	@Test
+	void verifiesTokensSignedByAnyReplicaWithTheSameKeys() {
+		String token = tokenService(OLD_KEY, Duration.ofHours(1)).issueToken(user);
+
+		TokenClaims claims = tokenService(OLD_KEY, Duration.ofHours(1)).verify(token).orElseThrow();
+
+		assertThat(token).startsWith("k1.42.");
+		assertThat(claims.userId()).isEqualTo(42L);
+	}
+
+	@Test
+	void rejectsTamperedExpiredAndUnknownKeyTokens() {
+		TokenService tokenService = tokenService(OLD_KEY, Duration.ofHours(1));
+		String token = tokenService.issueToken(user);
+
+		assertThat(tokenService.verify(token.replace("k1.42.", "k1.43."))).isEmpty();
+		assertThat(tokenService.verify(token.substring(0, token.length() - 2))).isEmpty();
+		assertThat(tokenService.verify(tokenService(OLD_KEY, Duration.ofSeconds(-1)).issueToken(user))).isEmpty();
+		assertThat(tokenService(NEW_KEY, Duration.ofHours(1)).verify(token)).isEmpty();
+		assertThat(tokenService.verify("not-a-token")).isEmpty();
+	}
+
+	@Test
+	void signsWithTheFirstKeyAndStillAcceptsRotatedOnes() {
+		String oldToken = tokenService(OLD_KEY, Duration.ofHours(1)).issueToken(user);
+		TokenService rotated = tokenService(NEW_KEY + "," + OLD_KEY, Duration.ofHours(1));
+
+		assertThat(rotated.verify(oldToken)).isPresent();
+		assertThat(rotated.issueToken(user)).startsWith("k2.");
+	}
+
+	@Test
+	void rejectsRevokedTokens() {
+		TokenService tokenService = tokenService(OLD_KEY, Duration.ofHours(1));
+		String token = tokenService.issueToken(user);
+		String other = tokenService.issueToken(user);
+
+		tokenService.revoke(token);
+
+		assertThat(tokenService.verify(token)).isEmpty();
+		assertThat(tokenService.verify(other)).isPresent();
+	}
+
+	@Test
+	void refusesShortKeys() {
+		String shortKey = "k1:" + Base64.getEncoder().encodeToString("too short".getBytes());
+
+		assertThatThrownBy(() -> tokenService(shortKey, Duration.ofHours(1))).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private TokenService tokenService(String keys, Duration ttl) {
+		return new TokenService(mock(PrincipalCache.class), revocationList, keys, ttl);
+	}
+}
@@ -0,0 +1,136 @@
+package com.file.system.springboot.service;
+
+import com.file.system.springboot.model.FileItem;
+import com.file.system.springboot.model.UploadSession;
+import com.file.system.springboot.repository.FolderRepository;
+import com.file.system.springboot.repository.StorageBlobRepository;
+import com.file.system.springboot.repository.UploadChunkRepository;
+import com.file.system.springboot.repository.UploadSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UploadSessionServiceTests {
+
+	@TempDir
+	Path storageRoot;
+
+	private LocalStorageBackend backend;
+	private UploadSessionRepository uploadSessionRepository;
+	private UploadChunkRepository uploadChunkRepository;
+	private FileService fileService;
+	private UploadSessionService uploadSessionService;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		backend = new LocalStorageBackend(storageRoot.toString(), false);
+		HotFileCache hotFileCache = new HotFileCache(false, DataSize.ofMegabytes(1), DataSize.ofKilobytes(64), 3, Duration.ofMinutes(10), new SimpleMeterRegistry());
+		StorageService storageService = new StorageService(backend, false, false, 0.8, mock(StorageBlobRepository.class), hotFileCache);
+		uploadSessionRepository = mock(UploadSessionRepository.class);
+		uploadChunkRepository = mock(UploadChunkRepository.class);
+		fileService = mock(FileService.class);
+		when(uploadSessionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+		uploadSessionService = new UploadSessionService(uploadSessionRepository, uploadChunkRepository,
+				mock(FolderRepository.class), storageService, fileService, mock(PlatformTransactionManager.class),
+				DataSize.ofBytes(4), Duration.ofHours(24));
+	}
+
+	@Test
+	void writesChunksAtTheirOffsetsInAnyOrder() throws Exception {
+		UploadSession session = create("notes.txt", 10);
+
+		writeChunk(session, 2, "IJ");
+		writeChunk(session, 0, "ABCD");
+		writeChunk(session, 1, "EFGH");
+
+		assertThat(Files.readString(backend.localPath(session.getStorageKey()).orElseThrow())).isEqualTo("ABCDEFGHIJ");
+		assertThatThrownBy(() -> writeChunk(session, 2, "IJK")).isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Chunk 2 must be 2 bytes");
+		assertThatThrownBy(() -> writeChunk(session, 3, "")).isInstanceOf(IllegalArgumentException.class);
+		assertThat(uploadSessionService.getCommittedOffset(session, List.of(0, 2))).isEqualTo(4);
+		assertThat(uploadSessionService.getCommittedOffset(session, List.of(0, 1, 2))).isEqualTo(10);
+		verify(uploadSessionRepository, times(3)).touch(eq(session.getId()), any(Instant.class));
+	}
+
+	@Test
+	void completesOnceEveryChunkHasArrived() throws Exception {
+		UploadSession session = create("notes.txt", 10);
+		writeChunk(session, 0, "ABCD");
+		writeChunk(session, 1, "EFGH");
+		writeChunk(session, 2, "IJ");
+		when(uploadChunkRepository.countByUploadId(session.getId())).thenReturn(2L);
+
+		assertThatThrownBy(() -> uploadSessionService.complete(session.getId(), 7L))
+				.isInstanceOf(IllegalArgumentException.class).hasMessage("Upload is missing 1 chunks");
+
+		when(uploadChunkRepository.countByUploadId(session.getId())).thenReturn(3L);
+		FileItem item = new FileItem();
+		when(fileService.register(any(), eq("notes.txt"), eq("text/plain"), isNull(), eq(7L))).thenReturn(item);
+
+		assertThat(uploadSessionService.complete(session.getId(), 7L)).isSameAs(item);
+		ArgumentCaptor<StoredObject> stored = ArgumentCaptor.forClass(StoredObject.class);
+		verify(fileService).register(stored.capture(), anyString(), anyString(), isNull(), anyLong());
+		assertThat(stored.getValue().size()).isEqualTo(10);
+		assertThat(stored.getValue().digest()).isEqualTo(sha256("ABCDEFGHIJ"));
+		verify(uploadSessionRepository).delete(session);
+	}
+
+	@Test
+	void expiresAbandonedUploadsWithTheirStoredParts() throws Exception {
+		UploadSession session = create("notes.txt", 10);
+		writeChunk(session, 0, "ABCD");
+		when(uploadSessionRepository.findAbandoned(any(Instant.class), any(Limit.class))).thenReturn(List.of(session));
+
+		uploadSessionService.expireAbandoned();
+
+		assertThat(backend.exists(session.getStorageKey())).isFalse();
+		verify(uploadChunkRepository).deleteByUploadId(session.getId());
+		verify(uploadSessionRepository).deleteById(session.getId());
+	}
+
+	@Test
+	void keepsOnlyASafeFileNameInTheStorageKey() throws Exception {
+		UploadSession session = create("../../etc/cron.d/evil job?.sh", 1);
+
+		assertThat(session.getFileName()).isEqualTo("../../etc/cron.d/evil job?.sh");
+		assertThat(session.getStorageKey()).matches("[0-9a-f-]{36}_evil_job_.sh");
+		assertThat(backend.localPath(session.getStorageKey()).orElseThrow()).startsWith(storageRoot);
+		assertThat(StorageService.newStorageKey("a".repeat(300) + ".txt")).hasSize(137).endsWith("a.txt");
+	}
+
+	private UploadSession create(String fileName, long size) throws Exception {
+		UploadSession session = uploadSessionService.create(fileName, size, "text/plain", null, 7L);
+		when(uploadSessionRepository.findByIdAndOwnerId(session.getId(), 7L)).thenReturn(Optional.of(session));
+		return session;
+	}
+
+	private void writeChunk(UploadSession session, int index, String content) throws Exception {
+		byte[] bytes = content.getBytes(StandardCharsets.US_ASCII);
+		uploadSessionService.writeChunk(session.getId(), 7L, index, new ByteArrayInputStream(bytes), bytes.length);
+	}
+
+	private static String sha256(String content) throws Exception {
+		return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.US_ASCII)));
+	}
+}
@@ -99,6 +99,10 @@ export const AuthProvider = ({ children }) => {
   };
 
   const logout = () => {
+    const token = localStorage.getItem('authToken');
+    if (token) {
+      authApi.logout(token).catch(() => {});
+    }
     localStorage.removeItem('authToken');
     localStorage.removeItem('userData');
     dispatch({ type: 'LOGOUT' });
@@ -4,10 +4,16 @@ import { filesApi, foldersApi, sharesApi } from '../services/api';
 
 const DataContext = createContext();
 
+// attach download url to files for UI compatibility
+const withUrl = (f) => ({ ...f, url: filesApi.downloadUrl(f.id), type: f.mimeType });
+
 const initialState = {
   files: [],
   folders: [],
   shareLinks: {},
+  // Keyset cursors of the next file and folder pages; null once everything is loaded
+  filesCursor: null,
+  foldersCursor: null,
   isLoading: true
 };
 
@@ -19,9 +25,20 @@ const dataReducer = (state, action) => {
         files: action.payload.files || [],
         folders: action.payload.folders || [],
         shareLinks: action.payload.shareLinks || {},
+        filesCursor: action.payload.filesCursor || null,
+        foldersCursor: action.payload.foldersCursor || null,
         isLoading: false
       };
 
+    case 'APPEND_PAGE':
+      return {
+        ...state,
+        files: [...state.files, ...action.payload.files],
+        folders: [...state.folders, ...action.payload.folders],
+        filesCursor: action.payload.filesCursor,
+        foldersCursor: action.payload.foldersCursor
+      };
+
     case 'ADD_FILES':
       return {
         ...state,
@@ -97,7 +114,8 @@ export const DataProvider = ({ children }) => {
     const loadData = async () => {
       try {
         dispatch({ type: 'LOAD_DATA', payload: { files: [], folders: [], shareLinks: {} } });
-        const [files, folders, shares] = await Promise.all([
+        // Only the first page of each; the rest comes in through loadMore
+        const [filePage, folderPage, shares] = await Promise.all([
           filesApi.list(),
           foldersApi.list(),
           sharesApi.list().catch(() => [])
@@ -106,11 +124,15 @@ export const DataProvider = ({ children }) => {
         (shares || []).forEach(s => {
           shareLinks[s.id] = s;
         });
-        // attach download url to files for UI compatibility
-        const filesWithUrl = files.map(f => ({ ...f, url: filesApi.downloadUrl(f.id), type: f.mimeType }));
         dispatch({
           type: 'LOAD_DATA',
-          payload: { files: filesWithUrl, folders, shareLinks }
+          payload: {
+            files: filePage.items.map(withUrl),
+            folders: folderPage.items,
+            shareLinks,
+            filesCursor: filePage.nextCursor,
+            foldersCursor: folderPage.nextCursor
+          }
         });
       } catch (error) {
         console.error('Failed to load data:', error);
@@ -123,15 +145,39 @@ export const DataProvider = ({ children }) => {
     }
   }, [isAuthenticated]);
 
-  const addFiles = async (localFiles) => {
-    // localFiles are File objects from input/dropzone
-    const tasks = localFiles.map(async (lf) => {
-      const fileObj = lf && lf.file instanceof File ? lf.file : lf;
-      const res = await filesApi.upload(fileObj);
-      return { ...res, url: filesApi.downloadUrl(res.id), type: res.mimeType };
+  const hasMore = Boolean(state.filesCursor || state.foldersCursor);
+
+  const loadMore = async () => {
+    const { filesCursor, foldersCursor } = state;
+    const [filePage, folderPage] = await Promise.all([
+      filesCursor ? filesApi.list(filesCursor) : { items: [], nextCursor: null },
+      foldersCursor ? foldersApi.list(foldersCursor) : { items: [], nextCursor: null }
+    ]);
+    dispatch({
+      type: 'APPEND_PAGE',
+      payload: {
+        files: filePage.items.map(withUrl),
+        folders: folderPage.items,
+        filesCursor: filePage.nextCursor,
+        foldersCursor: folderPage.nextCursor
+      }
     });
-    const results = await Promise.allSettled(tasks);
-    const uploaded = results.filter(r => r.status === 'fulfilled').map(r => r.value);
+  };
+
+  const addFiles = async (localFiles) => {
+    // localFiles are File objects from input/dropzone; they go up in one batch request, which is all or
+    // nothing, so if it fails each file is retried on its own to find out which ones can be stored
+    const fileObjs = localFiles.map(lf => (lf && lf.file instanceof File ? lf.file : lf));
+    let results;
+    try {
+      const created = await filesApi.uploadBatch(fileObjs);
+      results = created.map(value => ({ status: 'fulfilled', value }));
+    } catch (batchError) {
+      results = await Promise.allSettled(fileObjs.map(fileObj => filesApi.upload(fileObj)));
+    }
+    const uploaded = results
+      .filter(r => r.status === 'fulfilled')
+      .map(r => withUrl(r.value));
     const failures = results.filter(r => r.status === 'rejected');
     if (uploaded.length) {
       dispatch({ type: 'ADD_FILES', payload: uploaded });
@@ -209,6 +255,8 @@ export const DataProvider = ({ children }) => {
 
   const value = {
     ...state,
+    hasMore,
+    loadMore,
     addFiles,
     addFolder,
     updateFile,
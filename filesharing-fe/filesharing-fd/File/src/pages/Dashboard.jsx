@@ -29,7 +29,8 @@ import toast from 'react-hot-toast';
 const Dashboard = () => {
   const { user } = useAuth();
   const { trackFileUpload, trackFileDownload, trackFileShare, trackFileDelete, trackFolderCreate, trackFolderDelete } = useAnalytics();
-  const { files, folders, addFiles, addFolder, updateFile, deleteFile, deleteFolder, addShareLink, isLoading } = useData();
+  const { files, folders, hasMore, loadMore, addFiles, addFolder, updateFile, deleteFile, deleteFolder, addShareLink, isLoading } = useData();
+  const [isLoadingMore, setIsLoadingMore] = useState(false);
   const { isDark } = useTheme();
   const [viewMode, setViewMode] = useState('grid');
   const [searchQuery, setSearchQuery] = useState('');
@@ -74,6 +75,17 @@ const Dashboard = () => {
     return uploaded;
   };
 
+  const handleLoadMore = async () => {
+    setIsLoadingMore(true);
+    try {
+      await loadMore();
+    } catch (error) {
+      toast.error('Failed to load more files');
+    } finally {
+      setIsLoadingMore(false);
+    }
+  };
+
   const handleCreateFolder = () => {
     const folderName = prompt('Enter folder name:');
     if (folderName) {
@@ -402,6 +414,18 @@ const Dashboard = () => {
               )}
             </div>
           )}
+
+          {hasMore && (
+            <div className="text-center mt-8">
+              <button
+                onClick={handleLoadMore}
+                disabled={isLoadingMore}
+                className="btn-secondary hover-lift"
+              >
+                {isLoadingMore ? 'Loading...' : 'Load more'}
+              </button>
+            </div>
+          )}
         </div>
       </main>
 
@@ -21,19 +21,62 @@ const SessionView = () => {
   const [isSharing, setIsSharing] = useState(false);
   const [showFileSelector, setShowFileSelector] = useState(false);
 
+  // Changes arrive as server events; polling every 3 seconds only while the event stream is down
   useEffect(() => {
     loadSessionData();
-    const interval = setInterval(() => loadSessionData(true), 3000); // Refresh every 3 seconds
-    return () => clearInterval(interval);
+    const controller = new AbortController();
+    let pollInterval = null;
+    let retryTimeout = null;
+
+    const startPolling = () => {
+      if (!pollInterval) pollInterval = setInterval(() => loadSessionData(true), 3000);
+    };
+    const stopPolling = () => {
+      clearInterval(pollInterval);
+      pollInterval = null;
+    };
+
+    const connect = async () => {
+      let reconnect = true;
+      try {
+        reconnect = await passhareApi.subscribeSessionEvents(sessionId, (type) => {
+          if (type === 'ready') stopPolling();
+          // Also catches up on anything missed while disconnected
+          loadSessionData(true);
+        }, controller.signal);
+      } catch (error) {
+        if (controller.signal.aborted) return;
+        console.error('Session event stream error:', error);
+      }
+      if (controller.signal.aborted) return;
+      if (reconnect) {
+        startPolling();
+        retryTimeout = setTimeout(connect, 5000);
+      } else {
+        stopPolling();
+        loadSessionData(true);
+      }
+    };
+    connect();
+
+    return () => {
+      controller.abort();
+      stopPolling();
+      clearTimeout(retryTimeout);
+    };
   }, [sessionId]);
 
   const loadSessionData = async (isPolling = false) => {
     try {
-      const [sessionData, filesData] = await Promise.all([
-        passhareApi.getSession(sessionId),
-        passhareApi.getSessionFiles(sessionId)
-      ]);
+      const sessionData = await passhareApi.getSession(sessionId);
       setSession(sessionData);
+      // Ended by its creator or expired; its files are no longer available
+      if (!sessionData.active) {
+        toast('This session has ended', { id: 'session-ended' });
+        navigate('/passhare');
+        return;
+      }
+      const filesData = await passhareApi.getSessionFiles(sessionId);
       setSessionFiles(filesData);
       // Debug: log files data to check downloadCount
       console.log('Session files data:', filesData);
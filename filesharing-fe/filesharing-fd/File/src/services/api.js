@@ -8,6 +8,19 @@ const jsonHeaders = (token) => ({
   ...(token ? { Authorization: `Bearer ${token}` } : {})
 });
 
+// One page of a /page listing; pass nextCursor back in to get the following one (null once at the end)
+const PAGE_SIZE = 100;
+
+const listPage = async (path, cursor, errorMessage) => {
+  const params = new URLSearchParams({ limit: String(PAGE_SIZE) });
+  if (cursor) params.append("cursor", cursor);
+  const res = await fetch(`${BASE}${path}?${params.toString()}`, {
+    headers: { Authorization: `Bearer ${getToken()}` }
+  });
+  if (!res.ok) throw new Error(errorMessage);
+  return res.json();
+};
+
 // ==========================
 // USER API
 // ==========================
@@ -51,6 +64,14 @@ export const authApi = {
     const data = await res.json().catch(() => ({}));
     if (!res.ok) throw new Error(data.error || "Register failed");
     return data;
+  },
+
+  // Tokens stay valid until they expire unless the server is told to revoke them
+  async logout(token) {
+    await fetch(`${BASE}/auth/logout`, {
+      method: "POST",
+      headers: { Authorization: `Bearer ${token}` }
+    });
   }
 };
 
@@ -58,20 +79,31 @@ export const authApi = {
 // FILES API
 // ==========================
 export const filesApi = {
-  async list() {
+  async list(cursor) {
+    return listPage("/files/page", cursor, "Failed to list files");
+  },
+
+  async upload(file, folderId) {
+    const form = new FormData();
+    form.append("file", file);
+    if (folderId) form.append("folderId", String(folderId));
+
     const res = await fetch(`${BASE}/files`, {
+      method: "POST",
+      body: form,
       headers: { Authorization: `Bearer ${getToken()}` }
     });
-    if (!res.ok) throw new Error("Failed to list files");
+
+    if (!res.ok) throw new Error("Upload failed");
     return res.json();
   },
 
-  async upload(file, folderId) {
+  async uploadBatch(files, folderId) {
     const form = new FormData();
-    form.append("file", file);
+    files.forEach(file => form.append("files", file));
     if (folderId) form.append("folderId", String(folderId));
 
-    const res = await fetch(`${BASE}/files`, {
+    const res = await fetch(`${BASE}/files/batch`, {
       method: "POST",
       body: form,
       headers: { Authorization: `Bearer ${getToken()}` }
@@ -112,12 +144,8 @@ export const filesApi = {
 // FOLDERS API
 // ==========================
 export const foldersApi = {
-  async list() {
-    const res = await fetch(`${BASE}/folders`, {
-      headers: { Authorization: `Bearer ${getToken()}` }
-    });
-    if (!res.ok) throw new Error("Failed to list folders");
-    return res.json();
+  async list(cursor) {
+    return listPage("/folders/page", cursor, "Failed to list folders");
   },
 
   async create(name, parentId) {
@@ -160,11 +188,7 @@ export const foldersApi = {
 // ==========================
 export const sharesApi = {
   async list() {
-    const res = await fetch(`${BASE}/shares`, {
-      headers: { Authorization: `Bearer ${getToken()}` }
-    });
-    if (!res.ok) throw new Error("Failed to list shares");
-    return res.json();
+    return listAllPages("/shares/page", "Failed to list shares");
   },
 
   async create({ fileId, shareType, permissions, expiryEpochMs, password, createdBy }) {
@@ -330,5 +354,39 @@ export const passhareApi = {
 
   downloadSessionFileUrl(sessionId, fileId) {
     return `${BASE}/passhare/sessions/${sessionId}/files/${fileId}/download`;
+  },
+
+  // Reads the session's Server-Sent Events stream, calling onEvent(type, data) for each event, until the
+  // server closes it or signal aborts. fetch instead of EventSource so the bearer token can be sent.
+  // Resolves to false when the session is gone or not accessible, i.e. reconnecting is pointless.
+  async subscribeSessionEvents(id, onEvent, signal) {
+    const res = await fetch(`${BASE}/passhare/sessions/${id}/events`, {
+      headers: { Authorization: `Bearer ${getToken()}`, Accept: "text/event-stream" },
+      signal
+    });
+
+    if (res.status === 404 || res.status === 410) return false;
+    if (!res.ok || !res.body) throw new Error("Failed to subscribe to session events");
+
+    const reader = res.body.pipeThrough(new TextDecoderStream()).getReader();
+    let buffer = "";
+    for (;;) {
+      const { value, done } = await reader.read();
+      if (done) return true;
+      buffer += value;
+      let end;
+      while ((end = buffer.indexOf("\n\n")) !== -1) {
+        const block = buffer.slice(0, end);
+        buffer = buffer.slice(end + 2);
+        let type = "message";
+        const data = [];
+        for (const line of block.split("\n")) {
+          if (line.startsWith("event:")) type = line.slice(6).trim();
+          else if (line.startsWith("data:")) data.push(line.slice(5).trimStart());
+        }
+        // Heartbeats are comment-only blocks
+        if (data.length > 0) onEvent(type, JSON.parse(data.join("\n")));
+      }
+    }
   }
 };